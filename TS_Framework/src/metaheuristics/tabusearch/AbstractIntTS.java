@@ -0,0 +1,638 @@
+package metaheuristics.tabusearch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import problems.IntEvaluator;
+import solutions.IntSet;
+import solutions.IntSolution;
+
+/**
+ * Abstract class for metaheuristic Tabu Search over problems whose elements
+ * are the integers 0..n-1. It mirrors {@link AbstractTS}, but keeps solutions,
+ * candidate lists and the tabu list in primitive structures, so the main loop
+ * neither boxes elements nor costs. It consider a minimization problem.
+ */
+public abstract class AbstractIntTS {
+
+	/**
+	 * flag that indicates whether the code should print more information on
+	 * screen
+	 */
+	public static boolean verbose = true;
+
+	/**
+	 * a random number generator
+	 */
+	protected Random rng = new Random(0);
+
+	/**
+	 * the greediness parameter of the constructive heuristic. The RCL receives
+	 * every candidate whose cost variation is within alpha*(maxCost-minCost)
+	 * of the best one, so alpha = 0 is purely greedy and alpha = 1 is purely
+	 * random.
+	 */
+	protected double alpha = 0.0;
+
+	/**
+	 * the objective function being optimized
+	 */
+	protected IntEvaluator ObjFunction;
+
+	/**
+	 * the best solution cost
+	 */
+	protected double bestCost;
+
+	/**
+	 * the incumbent solution cost
+	 */
+	protected double incumbentCost;
+
+	/**
+	 * a lower bound on the cost of an optimal solution; the main loop stops
+	 * as soon as the best solution reaches it.
+	 */
+	protected double lowerBound = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * the best solution
+	 */
+	protected IntSolution bestSol;
+
+	/**
+	 * the incumbent solution
+	 */
+	protected IntSolution incumbentSol;
+
+	/**
+	 * the time limit, in milliseconds, of the TS main loop.
+	 */
+	protected long iterations;
+
+	/**
+	 * the tabu tenure.
+	 */
+	protected int tenure;
+
+	/**
+	 * the Candidate List of elements to enter the solution.
+	 */
+	protected IntSet CL;
+
+	/**
+	 * the Restricted Candidate List of elements to enter the solution.
+	 */
+	protected IntSet RCL;
+
+	/**
+	 * the Tabu List of elements to enter the solution.
+	 */
+	protected IntTabuList TL;
+
+	/**
+	 * buffer for the cost variations of the candidates, evaluated in batch.
+	 */
+	private double[] costs = new double[0];
+
+	/**
+	 * the periodic checkpoints of the main loop, or null.
+	 */
+	private Checkpointer checkpointer = null;
+
+	/**
+	 * whether the main loop calls {@link #improveBound()}, which is turned
+	 * off by checkpoints since it depends on the wall-clock time.
+	 */
+	private boolean boundImproved = true;
+
+	/**
+	 * the island of the {@link IslandModel} the search belongs to, or null.
+	 */
+	IslandModel.Island island = null;
+
+	/**
+	 * the listener of the main loop, or null.
+	 */
+	private SearchListener listener = null;
+
+	/**
+	 * the time the main loop started at, minus the time spent before a
+	 * resume.
+	 */
+	private long startTime;
+
+	/**
+	 * the first bytes of a checkpoint file.
+	 */
+	private static final int CHECKPOINT_MAGIC = 0x54534350;
+
+	/**
+	 * Creates the Candidate List of elements that can enter a solution.
+	 *
+	 * @return The Candidate List.
+	 */
+	public abstract IntSet makeCL();
+
+	/**
+	 * Creates the Restricted Candidate List, which receives the best
+	 * candidate elements that can enter a solution.
+	 *
+	 * @return The Restricted Candidate List.
+	 */
+	public abstract IntSet makeRCL();
+
+	/**
+	 * Creates the Tabu List. The number of iterations a candidate is
+	 * considered tabu is given by the Tabu Tenure {@link #tenure}
+	 *
+	 * @return The Tabu List.
+	 */
+	public abstract IntTabuList makeTL();
+
+	/**
+	 * Updates the Candidate List according to the incumbent solution
+	 * {@link #incumbentSol}.
+	 */
+	public abstract void updateCL();
+
+	/**
+	 * Creates a new solution which is empty, i.e., does not contain any
+	 * candidate solution element.
+	 *
+	 * @return An empty solution.
+	 */
+	public abstract IntSolution createEmptySol();
+
+	/**
+	 * Applies one move of the TS local search to the incumbent solution.
+	 *
+	 * @return The incumbent solution.
+	 * @see AbstractTS#neighborhoodMove()
+	 */
+	public abstract IntSolution neighborhoodMove();
+
+	/**
+	 * Constructor for the AbstractIntTS class.
+	 *
+	 * @param objFunction
+	 *            The objective function being minimized.
+	 * @param tenure
+	 *            The Tabu tenure parameter.
+	 * @param iterations
+	 *            The time limit, in milliseconds, of the TS main loop.
+	 */
+	public AbstractIntTS(IntEvaluator objFunction, int tenure, long iterations) {
+		this.ObjFunction = objFunction;
+		this.tenure = tenure;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * The TS constructive heuristic, which is responsible for building a
+	 * feasible solution by selecting in a greedy fashion, candidate
+	 * elements to enter the solution.
+	 *
+	 * @return A feasible solution to the problem being minimized.
+	 */
+	public IntSolution constructiveHeuristic() {
+		return constructiveHeuristic(createEmptySol());
+	}
+
+	/**
+	 * The TS constructive heuristic started from a feasible partial solution,
+	 * whose elements are kept while the heuristic inserts new ones.
+	 *
+	 * @param partialSol
+	 *            The solution to complete, which is not modified.
+	 * @return A feasible solution to the problem being minimized.
+	 */
+	public IntSolution constructiveHeuristic(IntSolution partialSol) {
+
+		CL = makeCL();
+		RCL = makeRCL();
+		incumbentSol = new IntSolution(partialSol);
+		for (int k = 0; k < incumbentSol.size(); k++)
+			CL.remove(incumbentSol.get(k));
+		ObjFunction.evaluate(incumbentSol);
+		incumbentCost = Double.POSITIVE_INFINITY;
+
+		/* Main loop, which repeats until the stopping criteria is reached. */
+		while (!constructiveStopCriteria()) {
+
+			double maxCost = Double.NEGATIVE_INFINITY, minCost = Double.POSITIVE_INFINITY;
+			incumbentCost = incumbentSol.cost;
+			updateCL();
+			if (CL.isEmpty())
+				break;
+
+			/*
+			 * Explore all candidate elements to enter the solution, saving the
+			 * highest and lowest cost variation achieved by the candidates.
+			 */
+			if (costs.length < CL.size())
+				costs = new double[CL.size()];
+			ObjFunction.evaluateInsertionCosts(CL.elements(), CL.size(), incumbentSol, costs);
+			for (int k = 0; k < CL.size(); k++) {
+				if (costs[k] < minCost)
+					minCost = costs[k];
+				if (costs[k] > maxCost)
+					maxCost = costs[k];
+			}
+
+			/*
+			 * Among all candidates, insert into the RCL those with the highest
+			 * performance.
+			 */
+			double threshold = minCost + alpha * (maxCost - minCost);
+			for (int k = 0; k < CL.size(); k++) {
+				if (costs[k] <= threshold) {
+					RCL.add(CL.get(k));
+				}
+			}
+
+			/* Choose a candidate randomly from the RCL */
+			int rndIndex = rng.nextInt(RCL.size());
+			int inCand = RCL.get(rndIndex);
+			CL.remove(inCand);
+			incumbentSol.add(inCand);
+			ObjFunction.evaluate(incumbentSol);
+			RCL.clear();
+
+		}
+
+		return incumbentSol;
+	}
+
+	/**
+	 * The TS mainframe. It consists of a constructive heuristic followed by
+	 * a loop, in which each iteration a neighborhood move is performed on
+	 * the current solution. The best solution is returned as result.
+	 *
+	 * @return The best feasible solution obtained throughout all iterations.
+	 */
+	public IntSolution solve() {
+
+		bestSol = createEmptySol();
+		constructiveHeuristic();
+		return search();
+	}
+
+	/**
+	 * The TS mainframe started from a given solution instead of the
+	 * constructive heuristic, such as the solution of a closely related
+	 * instance. The solution is made feasible by {@link #repair(IntSolution)}
+	 * if needed.
+	 *
+	 * @param initialSol
+	 *            The solution from which the local search starts, which is
+	 *            not modified.
+	 * @return The best feasible solution obtained throughout all iterations.
+	 */
+	public IntSolution solve(IntSolution initialSol) {
+		return solve(initialSol, false);
+	}
+
+	/**
+	 * The TS mainframe started from a given solution, which is made feasible
+	 * by {@link #repair(IntSolution)} if needed and then, optionally,
+	 * completed by the constructive heuristic.
+	 *
+	 * @param initialSol
+	 *            The solution from which the local search starts, which is
+	 *            not modified.
+	 * @param complete
+	 *            Whether the constructive heuristic inserts elements into the
+	 *            repaired solution before the local search.
+	 * @return The best feasible solution obtained throughout all iterations.
+	 * @throws IllegalArgumentException
+	 *             if the solution is not over the domain of the problem.
+	 */
+	public IntSolution solve(IntSolution initialSol, boolean complete) {
+
+		if (initialSol.getDomainSize() != ObjFunction.getDomainSize())
+			throw new IllegalArgumentException("the initial solution is over " + initialSol.getDomainSize()
+					+ " elements instead of " + ObjFunction.getDomainSize());
+		bestSol = createEmptySol();
+		IntSolution start = new IntSolution(initialSol);
+		repair(start);
+		if (complete) {
+			constructiveHeuristic(start);
+		} else {
+			CL = makeCL();
+			RCL = makeRCL();
+			incumbentSol = start;
+			for (int k = 0; k < incumbentSol.size(); k++)
+				CL.remove(incumbentSol.get(k));
+			ObjFunction.evaluate(incumbentSol);
+			incumbentCost = incumbentSol.cost;
+		}
+		return search();
+	}
+
+	/**
+	 * Makes a solution given to {@link #solve(IntSolution, boolean)} feasible,
+	 * removing as few elements as possible. The problems without constraints
+	 * keep the default, which does nothing.
+	 *
+	 * @param sol
+	 *            The solution to repair, modified in place.
+	 * @return The number of elements removed.
+	 */
+	protected int repair(IntSolution sol) {
+		return 0;
+	}
+
+	/**
+	 * The TS main loop, in which each iteration a neighborhood move is
+	 * performed on the incumbent solution until the time limit given by
+	 * {@link #iterations} is reached.
+	 *
+	 * @return The best feasible solution obtained throughout all iterations.
+	 */
+	protected IntSolution search() {
+
+		TL = makeTL();
+		if (bestSol.cost > incumbentSol.cost)
+			bestSol.copyFrom(incumbentSol);
+		return mainLoop(0);
+	}
+
+	/**
+	 * The TS main loop, which runs until {@link #iterations} milliseconds have
+	 * elapsed, counting the time already spent before a resume, or until the
+	 * best solution reaches the {@link #lowerBound}.
+	 *
+	 * @param elapsed
+	 *            The time already spent, in milliseconds.
+	 * @return The best feasible solution obtained throughout all iterations.
+	 */
+	private IntSolution mainLoop(long elapsed) {
+
+		startTime = System.currentTimeMillis() - elapsed;
+		if (listener != null)
+			listener.bestImproved(bestSol, elapsed);
+		while (System.currentTimeMillis() - startTime <= iterations && bestSol.cost > lowerBound) {
+			applyUpdates();
+			neighborhoodMove();
+			recordBest();
+			if (boundImproved)
+				improveBound();
+			if (island != null)
+				island.migrate();
+			if (checkpointer != null && checkpointer.isDue())
+				checkpoint(System.currentTimeMillis() - startTime);
+		}
+		if (checkpointer != null) {
+			checkpointer.flush();
+			checkpoint(System.currentTimeMillis() - startTime);
+			checkpointer.flush();
+		}
+		if (verbose)
+			System.out.println(bestSol.cost <= lowerBound ? "Optimal solution proven"
+					: "Gap = " + getGap() + " (lower bound " + lowerBound + ")");
+
+		return bestSol;
+	}
+
+	/**
+	 * Called before every move of the main loop. Subclasses whose objective
+	 * function can be changed while the search runs apply the waiting
+	 * changes here, updating the costs of the incumbent and best solutions.
+	 */
+	protected void applyUpdates() {
+	}
+
+	/**
+	 * Called after every iteration of the main loop. Subclasses that can
+	 * tighten {@link #lowerBound} while the search runs do it here.
+	 */
+	protected void improveBound() {
+	}
+
+	/**
+	 * @return The lower bound on the cost of an optimal solution.
+	 */
+	public double getLowerBound() {
+		return lowerBound;
+	}
+
+	/**
+	 * @return The difference between the cost of the best solution and the
+	 *         lower bound, zero when the best solution is proven optimal.
+	 */
+	public double getGap() {
+		return Math.max(0.0, bestSol.cost - lowerBound);
+	}
+
+	/**
+	 * Replaces the incumbent solution in the middle of the search, as done
+	 * when a solution migrates from another search. The CL is rebuilt, the
+	 * Tabu List is emptied and an improvement of the best solution is
+	 * reported as in the main loop.
+	 *
+	 * @param sol
+	 *            The new incumbent solution, which is copied.
+	 */
+	public void moveTo(IntSolution sol) {
+
+		incumbentSol.copyFrom(sol);
+		incumbentCost = incumbentSol.cost;
+		CL = makeCL();
+		for (int k = 0; k < incumbentSol.size(); k++)
+			CL.remove(incumbentSol.get(k));
+		TL = makeTL();
+		incumbentChanged();
+		recordBest();
+	}
+
+	/**
+	 * Copies the incumbent solution into the best solution if it is better,
+	 * printing it and notifying the listener.
+	 */
+	protected void recordBest() {
+
+		if (bestSol.cost > incumbentSol.cost) {
+			bestSol.copyFrom(incumbentSol);
+			long elapsed = System.currentTimeMillis() - startTime;
+			if (verbose)
+				System.out.println("(Iter. " + ((double) elapsed / (double) 1000) + ") BestSol = " + bestSol);
+			if (listener != null)
+				listener.bestImproved(bestSol, elapsed);
+		}
+	}
+
+	/**
+	 * Called by {@link #moveTo(IntSolution)} after the incumbent solution is
+	 * replaced. Subclasses that keep state derived from the incumbent
+	 * solution synchronize it here.
+	 */
+	protected void incumbentChanged() {
+	}
+
+	/**
+	 * Sets the listener notified of the improvements of the best solution
+	 * during the main loop.
+	 *
+	 * @param listener
+	 *            The listener, or null.
+	 */
+	public void setListener(SearchListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Enables periodic checkpoints of the main loop. The checkpoints are
+	 * written in the background and replace the checkpoint file atomically; a
+	 * last one is written when the time limit is reached. The bounding done
+	 * in {@link #improveBound()} runs in slices of wall-clock time and is not
+	 * saved, so it is turned off and the {@link #lowerBound} keeps its
+	 * initial value.
+	 *
+	 * @param filename
+	 *            The checkpoint file.
+	 * @param interval
+	 *            The minimum time, in milliseconds, between two checkpoints.
+	 */
+	public void setCheckpoint(String filename, long interval) {
+		this.checkpointer = new Checkpointer(filename, interval);
+		this.boundImproved = false;
+	}
+
+	/**
+	 * Resumes the main loop from a checkpoint written by a solver with the
+	 * same problem and parameters. The search follows the same sequence of
+	 * moves it would have followed without the interruption, and the time
+	 * spent before the checkpoint counts towards {@link #iterations}. As in
+	 * {@link #setCheckpoint(String, long)}, {@link #improveBound()} is turned
+	 * off.
+	 *
+	 * @param filename
+	 *            The checkpoint file.
+	 * @return The best feasible solution obtained throughout all iterations.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public IntSolution resume(String filename) throws IOException {
+
+		DataInputStream in = Checkpointer.open(filename);
+		if (in.readInt() != CHECKPOINT_MAGIC)
+			throw new IOException(filename + " is not a checkpoint file");
+		long elapsed = in.readLong();
+		CL = makeCL();
+		RCL = makeRCL();
+		incumbentSol = createEmptySol();
+		bestSol = createEmptySol();
+		TL = makeTL();
+		readState(in);
+		boundImproved = false;
+		return mainLoop(elapsed);
+	}
+
+	/**
+	 * Serializes the search state and hands it to the checkpointer.
+	 */
+	private void checkpoint(long elapsed) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(CHECKPOINT_MAGIC);
+			out.writeLong(elapsed);
+			writeState(out);
+			out.flush();
+			checkpointer.write(bytes.toByteArray());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes the state of the search needed to resume it. Subclasses that keep
+	 * more state must extend both this method and
+	 * {@link #readState(DataInput)}.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	protected void writeState(DataOutput out) throws IOException {
+		out.writeInt(tenure);
+		out.writeDouble(incumbentCost);
+		incumbentSol.writeState(out);
+		bestSol.writeState(out);
+		CL.writeState(out);
+		TL.writeState(out);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream rngOut = new ObjectOutputStream(bytes);
+		rngOut.writeObject(rng);
+		rngOut.close();
+		out.writeInt(bytes.size());
+		out.write(bytes.toByteArray());
+	}
+
+	/**
+	 * Restores the state written by {@link #writeState(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	protected void readState(DataInput in) throws IOException {
+		tenure = in.readInt();
+		incumbentCost = in.readDouble();
+		incumbentSol.readState(in);
+		bestSol.readState(in);
+		CL.readState(in);
+		TL.readState(in);
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		try (ObjectInputStream rngIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			rng = (Random) rngIn.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Reseeds the random number generator used by the heuristic.
+	 *
+	 * @param seed
+	 *            The new seed.
+	 */
+	public void setSeed(long seed) {
+		rng.setSeed(seed);
+	}
+
+	/**
+	 * Sets the greediness parameter {@link #alpha} of the constructive
+	 * heuristic.
+	 *
+	 * @param alpha
+	 *            A value in [0,1].
+	 */
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	/**
+	 * A standard stopping criteria for the constructive heuristic is to repeat
+	 * until the incumbent solution improves by inserting a new candidate
+	 * element.
+	 *
+	 * @return true if the criteria is met.
+	 */
+	public boolean constructiveStopCriteria() {
+		return (incumbentCost > incumbentSol.cost) ? false : true;
+	}
+
+}
@@ -0,0 +1,125 @@
+package metaheuristics.tabusearch;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Periodic checkpoints of a search. The search thread serializes its state
+ * into a byte array, which is handed to a background thread, shared by all the
+ * checkpointers, that writes it to a temporary file and renames it over the checkpoint file, so a checkpoint
+ * file is always complete even if the process dies while writing. A new
+ * snapshot is only requested when the interval has elapsed and the previous
+ * one has been written, which bounds the overhead on the search.
+ */
+public class Checkpointer {
+
+	/**
+	 * the writer thread, shared so that no thread is left behind by each
+	 * solver in a long-running JVM.
+	 */
+	private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "checkpoint-writer");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * the checkpoint file.
+	 */
+	private final Path path;
+
+	/**
+	 * the temporary file written before the rename.
+	 */
+	private final Path tmp;
+
+	/**
+	 * the minimum time, in milliseconds, between two checkpoints.
+	 */
+	private final long interval;
+
+	/**
+	 * the last write requested, or null.
+	 */
+	private Future<?> pending = null;
+
+	/**
+	 * the time of the last checkpoint.
+	 */
+	private long last;
+
+	/**
+	 * Constructor for the Checkpointer class.
+	 *
+	 * @param filename
+	 *            The checkpoint file.
+	 * @param interval
+	 *            The minimum time, in milliseconds, between two checkpoints.
+	 */
+	public Checkpointer(String filename, long interval) {
+		this.path = Paths.get(filename);
+		this.tmp = Paths.get(filename + ".tmp");
+		this.interval = interval;
+		this.last = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return true if a new checkpoint should be taken now.
+	 */
+	public boolean isDue() {
+		return System.currentTimeMillis() - last >= interval && (pending == null || pending.isDone());
+	}
+
+	/**
+	 * Writes a checkpoint in the background.
+	 *
+	 * @param data
+	 *            The serialized state, owned by the checkpointer from now on.
+	 */
+	public void write(final byte[] data) {
+		last = System.currentTimeMillis();
+		pending = WRITER.submit(() -> {
+			try {
+				Files.write(tmp, data);
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				System.err.println("Checkpoint " + path + " failed: " + e);
+			}
+		});
+	}
+
+	/**
+	 * Waits for the pending write, if any.
+	 */
+	public void flush() {
+		if (pending == null)
+			return;
+		try {
+			pending.get();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Opens a checkpoint file for reading.
+	 *
+	 * @param filename
+	 *            The checkpoint file.
+	 * @return The stream of the serialized state.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static DataInputStream open(String filename) throws IOException {
+		return new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(Paths.get(filename))));
+	}
+
+}
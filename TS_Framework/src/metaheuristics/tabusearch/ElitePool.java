@@ -0,0 +1,276 @@
+package metaheuristics.tabusearch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import solutions.IntSet;
+
+/**
+ * Bounded pool of elite solutions of a binary problem whose elements are the
+ * indices 0..n-1. Solutions are stored compactly as a bitset together with
+ * their cost and a hash, and the replacement policy takes diversity into
+ * account: a new solution enters the pool only if it is not a duplicate and,
+ * once the pool is full, only if it is better than the worst one. In that case
+ * it replaces, among the solutions that are not better than it, the one
+ * closest to it in Hamming distance. A solution that is too close to a better
+ * one already in the pool is rejected. It considers a minimization problem.
+ */
+public class ElitePool {
+
+	/**
+	 * An elite solution, stored as a bitset.
+	 */
+	public static class Entry {
+
+		/**
+		 * the bitset of the solution elements.
+		 */
+		public final long[] bits;
+
+		/**
+		 * the solution cost.
+		 */
+		public final double cost;
+
+		/**
+		 * the hash of the bitset.
+		 */
+		public final long hash;
+
+		private Entry(long[] bits, double cost) {
+			this.bits = bits;
+			this.cost = cost;
+			this.hash = hash(bits);
+		}
+
+		/**
+		 * @param i
+		 *            An element.
+		 * @return true if the element belongs to the solution.
+		 */
+		public boolean contains(int i) {
+			return (bits[i >>> 6] & (1L << i)) != 0;
+		}
+
+		/**
+		 * @return The number of elements of the solution.
+		 */
+		public int cardinality() {
+			int c = 0;
+			for (long w : bits)
+				c += Long.bitCount(w);
+			return c;
+		}
+
+		/**
+		 * @return The elements of the solution in increasing order.
+		 */
+		public int[] elements() {
+			int[] elems = new int[cardinality()];
+			int k = 0;
+			for (int w = 0; w < bits.length; w++) {
+				long word = bits[w];
+				while (word != 0) {
+					elems[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+			}
+			return elems;
+		}
+
+	}
+
+	/**
+	 * the number of elements of the problem domain.
+	 */
+	private final int domainSize;
+
+	/**
+	 * the maximum number of solutions kept.
+	 */
+	private final int capacity;
+
+	/**
+	 * the minimum Hamming distance between a new solution and any better
+	 * solution of the pool.
+	 */
+	private final int minDistance;
+
+	/**
+	 * the elite solutions.
+	 */
+	private final ArrayList<Entry> entries;
+
+	/**
+	 * Constructor for the ElitePool class.
+	 *
+	 * @param domainSize
+	 *            The number of elements of the problem domain.
+	 * @param capacity
+	 *            The maximum number of solutions kept.
+	 * @param minDistance
+	 *            The minimum Hamming distance to a better pool solution.
+	 */
+	public ElitePool(int domainSize, int capacity, int minDistance) {
+		this.domainSize = domainSize;
+		this.capacity = capacity;
+		this.minDistance = minDistance;
+		this.entries = new ArrayList<Entry>(capacity);
+	}
+
+	/**
+	 * Offers a solution to the pool.
+	 *
+	 * @param sol
+	 *            The elements of the solution.
+	 * @param cost
+	 *            The solution cost.
+	 * @return true if the solution entered the pool.
+	 */
+	public boolean offer(IntSet sol, double cost) {
+		long[] bits = new long[(domainSize + 63) >>> 6];
+		for (int k = 0; k < sol.size(); k++)
+			bits[sol.get(k) >>> 6] |= 1L << sol.get(k);
+		return offer(bits, cost);
+	}
+
+	/**
+	 * Offers a solution, given as a bitset, to the pool. The pool takes
+	 * ownership of the array.
+	 *
+	 * @param bits
+	 *            The bitset of the solution elements.
+	 * @param cost
+	 *            The solution cost.
+	 * @return true if the solution entered the pool.
+	 */
+	public boolean offer(long[] bits, double cost) {
+
+		Entry cand = new Entry(bits, cost);
+		Entry closest = null;
+		int closestDist = Integer.MAX_VALUE;
+		Entry worst = null;
+
+		for (Entry e : entries) {
+			int d = distance(cand, e);
+			if (d == 0 || (d < minDistance && e.cost <= cost))
+				return false;
+			if (e.cost >= cost && d < closestDist) {
+				closest = e;
+				closestDist = d;
+			}
+			if (worst == null || e.cost > worst.cost)
+				worst = e;
+		}
+
+		if (entries.size() < capacity) {
+			entries.add(cand);
+			return true;
+		}
+		if (closest == null || cost >= worst.cost)
+			return false;
+		entries.set(entries.indexOf(closest), cand);
+
+		return true;
+	}
+
+	/**
+	 * @param i
+	 *            The position of the solution in the pool.
+	 * @return The elite solution.
+	 */
+	public Entry get(int i) {
+		return entries.get(i);
+	}
+
+	/**
+	 * @return The number of solutions in the pool.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return The best solution of the pool, or null if it is empty.
+	 */
+	public Entry best() {
+		Entry best = null;
+		for (Entry e : entries)
+			if (best == null || e.cost < best.cost)
+				best = e;
+		return best;
+	}
+
+	/**
+	 * Hamming distance between two solutions.
+	 *
+	 * @param a
+	 *            A solution.
+	 * @param b
+	 *            Another solution.
+	 * @return The number of elements in which the solutions differ.
+	 */
+	public static int distance(Entry a, Entry b) {
+		if (a.hash == b.hash && Arrays.equals(a.bits, b.bits))
+			return 0;
+		int d = 0;
+		for (int w = 0; w < a.bits.length; w++)
+			d += Long.bitCount(a.bits[w] ^ b.bits[w]);
+		return d;
+	}
+
+	/**
+	 * 64-bit hash of a bitset.
+	 */
+	private static long hash(long[] bits) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (long w : bits) {
+			h ^= w;
+			h *= 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		return h;
+	}
+
+	/**
+	 * Writes the solutions of the pool, in their order.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(entries.size());
+		for (Entry e : entries) {
+			out.writeDouble(e.cost);
+			for (long w : e.bits)
+				out.writeLong(w);
+		}
+	}
+
+	/**
+	 * Replaces the solutions of the pool by the ones written by
+	 * {@link #writeState(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void readState(DataInput in) throws IOException {
+		entries.clear();
+		int n = in.readInt();
+		for (int k = 0; k < n; k++) {
+			double cost = in.readDouble();
+			long[] bits = new long[(domainSize + 63) >>> 6];
+			for (int w = 0; w < bits.length; w++)
+				bits[w] = in.readLong();
+			entries.add(new Entry(bits, cost));
+		}
+	}
+
+}
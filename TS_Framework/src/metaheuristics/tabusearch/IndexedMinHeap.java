@@ -0,0 +1,201 @@
+package metaheuristics.tabusearch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over the elements 0..n-1 keyed by a double, which keeps the
+ * position of each element so that its key can be changed or the element
+ * removed in O(log n). It is used to select the best move among elements
+ * whose cost variations change only partially from one iteration to the
+ * next.
+ */
+public class IndexedMinHeap {
+
+	/**
+	 * the key of each element.
+	 */
+	private final double[] keys;
+
+	/**
+	 * the heap of elements.
+	 */
+	private final int[] heap;
+
+	/**
+	 * the position of each element in the heap, or -1 if it is absent.
+	 */
+	private final int[] pos;
+
+	/**
+	 * the number of elements in the heap.
+	 */
+	private int count;
+
+	/**
+	 * Constructor for the IndexedMinHeap class. The heap starts empty.
+	 *
+	 * @param size
+	 *            The number of possible elements.
+	 */
+	public IndexedMinHeap(int size) {
+		keys = new double[size];
+		heap = new int[size];
+		pos = new int[size];
+		clear();
+	}
+
+	/**
+	 * Removes every element.
+	 */
+	public void clear() {
+		Arrays.fill(pos, -1);
+		count = 0;
+	}
+
+	/**
+	 * Inserts an element or changes its key.
+	 *
+	 * @param i
+	 *            The element.
+	 * @param key
+	 *            The key of the element.
+	 */
+	public void set(int i, double key) {
+		if (pos[i] < 0) {
+			keys[i] = key;
+			pos[i] = count;
+			heap[count++] = i;
+			siftUp(pos[i]);
+		} else if (key < keys[i]) {
+			keys[i] = key;
+			siftUp(pos[i]);
+		} else {
+			keys[i] = key;
+			siftDown(pos[i]);
+		}
+	}
+
+	/**
+	 * Removes an element, if present.
+	 *
+	 * @param i
+	 *            The element.
+	 */
+	public void remove(int i) {
+		int p = pos[i];
+		if (p < 0)
+			return;
+		pos[i] = -1;
+		if (--count == p)
+			return;
+		int last = heap[count];
+		heap[p] = last;
+		pos[last] = p;
+		siftUp(p);
+		siftDown(pos[last]);
+	}
+
+	/**
+	 * @param i
+	 *            An element.
+	 * @return true if the element is in the heap.
+	 */
+	public boolean contains(int i) {
+		return pos[i] >= 0;
+	}
+
+	/**
+	 * @return The element of minimum key, or -1 if the heap is empty.
+	 */
+	public int peek() {
+		return count == 0 ? -1 : heap[0];
+	}
+
+	/**
+	 * @param i
+	 *            An element of the heap.
+	 * @return The key of the element.
+	 */
+	public double key(int i) {
+		return keys[i];
+	}
+
+	/**
+	 * @return The number of elements in the heap.
+	 */
+	public int size() {
+		return count;
+	}
+
+	private void siftUp(int p) {
+		int i = heap[p];
+		while (p > 0) {
+			int parent = (p - 1) >>> 1;
+			if (keys[heap[parent]] <= keys[i])
+				break;
+			heap[p] = heap[parent];
+			pos[heap[p]] = p;
+			p = parent;
+		}
+		heap[p] = i;
+		pos[i] = p;
+	}
+
+	private void siftDown(int p) {
+		int i = heap[p];
+		while (true) {
+			int child = 2 * p + 1;
+			if (child >= count)
+				break;
+			if (child + 1 < count && keys[heap[child + 1]] < keys[heap[child]])
+				child++;
+			if (keys[heap[child]] >= keys[i])
+				break;
+			heap[p] = heap[child];
+			pos[heap[p]] = p;
+			p = child;
+		}
+		heap[p] = i;
+		pos[i] = p;
+	}
+
+	/**
+	 * Writes the heap, so that {@link #readState(DataInput)} restores the same
+	 * layout and therefore the same choices among equal keys.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(count);
+		for (int p = 0; p < count; p++) {
+			out.writeInt(heap[p]);
+			out.writeDouble(keys[heap[p]]);
+		}
+	}
+
+	/**
+	 * Restores the heap written by {@link #writeState(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void readState(DataInput in) throws IOException {
+		clear();
+		count = in.readInt();
+		for (int p = 0; p < count; p++) {
+			int i = in.readInt();
+			heap[p] = i;
+			pos[i] = p;
+			keys[i] = in.readDouble();
+		}
+	}
+
+}
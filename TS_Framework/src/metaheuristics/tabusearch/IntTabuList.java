@@ -0,0 +1,169 @@
+package metaheuristics.tabusearch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Primitive Tabu List for problems whose elements are the integers 0..n-1. It
+ * is a FIFO queue kept in a ring buffer, together with the number of copies of
+ * each element in the queue, so {@link #contains(int)} costs O(1) instead of
+ * the O(tenure) scan of an {@link java.util.ArrayDeque}. The value
+ * {@link #FAKE} can be queued to fill the positions of moves that made no
+ * element tabu.
+ */
+public class IntTabuList {
+
+	/**
+	 * the placeholder element, which is never tabu.
+	 */
+	public static final int FAKE = -1;
+
+	/**
+	 * the number of copies of each element in the queue.
+	 */
+	private final int[] count;
+
+	/**
+	 * the ring buffer of the queue.
+	 */
+	private int[] ring;
+
+	private int head, size;
+
+	/**
+	 * Constructor for the IntTabuList class. The list starts empty.
+	 *
+	 * @param domainSize
+	 *            The number of elements of the problem domain.
+	 * @param capacity
+	 *            The initial capacity of the queue, which grows if needed.
+	 */
+	public IntTabuList(int domainSize, int capacity) {
+		count = new int[domainSize];
+		ring = new int[Math.max(1, capacity)];
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Appends an element to the tail of the queue.
+	 *
+	 * @param e
+	 *            The element, or {@link #FAKE}.
+	 */
+	public void add(int e) {
+		if (size == ring.length)
+			grow();
+		ring[(head + size) % ring.length] = e;
+		size++;
+		if (e != FAKE)
+			count[e]++;
+	}
+
+	/**
+	 * Inserts an element at the head of the queue, so it is the next one to
+	 * be polled.
+	 *
+	 * @param e
+	 *            The element, or {@link #FAKE}.
+	 */
+	public void addFirst(int e) {
+		if (size == ring.length)
+			grow();
+		head = (head + ring.length - 1) % ring.length;
+		ring[head] = e;
+		size++;
+		if (e != FAKE)
+			count[e]++;
+	}
+
+	/**
+	 * Removes the element at the head of the queue.
+	 *
+	 * @return The element removed, or {@link #FAKE} if the queue is empty.
+	 */
+	public int poll() {
+		if (size == 0)
+			return FAKE;
+		int e = ring[head];
+		head = (head + 1) % ring.length;
+		size--;
+		if (e != FAKE)
+			count[e]--;
+		return e;
+	}
+
+	/**
+	 * @param e
+	 *            An element.
+	 * @return true if the element is in the queue.
+	 */
+	public boolean contains(int e) {
+		return e != FAKE && count[e] > 0;
+	}
+
+	/**
+	 * @param k
+	 *            A position, from 0 (head) to size()-1 (tail).
+	 * @return The element at the given position of the queue.
+	 */
+	public int get(int k) {
+		return ring[(head + k) % ring.length];
+	}
+
+	/**
+	 * @return The number of entries of the queue, fake ones included.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		while (size > 0)
+			poll();
+		head = 0;
+	}
+
+	private void grow() {
+		int[] larger = new int[2 * ring.length];
+		for (int k = 0; k < size; k++)
+			larger[k] = get(k);
+		ring = larger;
+		head = 0;
+	}
+
+	/**
+	 * Writes the entries of the queue, from head to tail.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for (int k = 0; k < size; k++)
+			out.writeInt(get(k));
+	}
+
+	/**
+	 * Replaces the entries of the queue by the ones written by
+	 * {@link #writeState(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void readState(DataInput in) throws IOException {
+		clear();
+		int n = in.readInt();
+		for (int k = 0; k < n; k++)
+			add(in.readInt());
+	}
+
+}
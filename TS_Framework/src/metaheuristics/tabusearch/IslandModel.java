@@ -0,0 +1,263 @@
+package metaheuristics.tabusearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import solutions.IntSolution;
+
+/**
+ * Island model of parallel Tabu Searches. Every island is a solver, with its
+ * own configuration, running in its own thread. Every {@link #interval}
+ * iterations an island sends its best solution, if it improved since the last
+ * migration, to its neighbours in the {@link Topology}, and takes the
+ * solution waiting in its own mailbox, which replaces its incumbent solution
+ * if the {@link Acceptance} policy allows it.
+ *
+ * The mailboxes are lock-free single slots: a sender keeps the better of the
+ * waiting solution and its own with a compare-and-set, and the receiver
+ * empties the slot with an atomic swap, so no island ever waits for another.
+ *
+ * All the islands must solve the same problem instance, each one with its own
+ * evaluator.
+ */
+public class IslandModel {
+
+	/**
+	 * The islands to which an island sends its solutions.
+	 */
+	public enum Topology {
+		/** the next island, the last one sending to the first. */
+		RING,
+		/** the previous and the next islands. */
+		BIDIRECTIONAL_RING,
+		/** every other island. */
+		COMPLETE,
+		/** another island chosen at random at every migration. */
+		RANDOM
+	}
+
+	/**
+	 * When a received solution replaces the incumbent solution of an island.
+	 */
+	public enum Acceptance {
+		/** always. */
+		ALWAYS,
+		/** if it is better than the incumbent solution. */
+		BETTER_THAN_INCUMBENT,
+		/** if it is better than the best solution found by the island. */
+		BETTER_THAN_BEST
+	}
+
+	/**
+	 * A single-slot mailbox holding the best solution received since it was
+	 * last emptied.
+	 */
+	static class Mailbox {
+
+		private final AtomicReference<IntSolution> slot = new AtomicReference<IntSolution>();
+
+		/**
+		 * Leaves a solution in the mailbox, unless a better one is waiting.
+		 *
+		 * @param sol
+		 *            The solution, which must not be modified afterwards.
+		 */
+		void offer(IntSolution sol) {
+			IntSolution waiting;
+			do {
+				waiting = slot.get();
+				if (waiting != null && waiting.cost <= sol.cost)
+					return;
+			} while (!slot.compareAndSet(waiting, sol));
+		}
+
+		/**
+		 * @return the waiting solution, or null; the mailbox is emptied.
+		 */
+		IntSolution take() {
+			return slot.getAndSet(null);
+		}
+
+	}
+
+	/**
+	 * The migration state of one island, called by the main loop of its
+	 * solver after every iteration.
+	 */
+	class Island {
+
+		private final int index;
+		private final AbstractIntTS ts;
+		private final Random random;
+		private int countdown;
+		private double lastSent = Double.POSITIVE_INFINITY;
+		private int sent = 0, received = 0, accepted = 0;
+
+		Island(int index, AbstractIntTS ts) {
+			this.index = index;
+			this.ts = ts;
+			this.random = new Random(seed + index);
+			this.countdown = interval;
+		}
+
+		void migrate() {
+
+			if (--countdown > 0)
+				return;
+			countdown = interval;
+
+			if (ts.bestSol.cost < lastSent) {
+				lastSent = ts.bestSol.cost;
+				IntSolution emigrant = new IntSolution(ts.bestSol);
+				if (topology == Topology.RANDOM) {
+					int to = random.nextInt(islands.size() - 1);
+					mailboxes[to >= index ? to + 1 : to].offer(emigrant);
+				} else {
+					for (int to : neighbors[index])
+						mailboxes[to].offer(emigrant);
+				}
+				sent++;
+			}
+
+			IntSolution immigrant = mailboxes[index].take();
+			if (immigrant == null)
+				return;
+			received++;
+			if (acceptance == Acceptance.BETTER_THAN_INCUMBENT && immigrant.cost >= ts.incumbentSol.cost)
+				return;
+			if (acceptance == Acceptance.BETTER_THAN_BEST && immigrant.cost >= ts.bestSol.cost)
+				return;
+			ts.moveTo(immigrant);
+			accepted++;
+		}
+
+	}
+
+	private final List<? extends AbstractIntTS> islands;
+	private final Topology topology;
+	private final int interval;
+	private final Acceptance acceptance;
+	private final int[][] neighbors;
+	private final Mailbox[] mailboxes;
+	private final List<Island> states = new ArrayList<Island>();
+	private long seed = 0;
+
+	/**
+	 * Constructor for the IslandModel class.
+	 *
+	 * @param islands
+	 *            The solvers, at least two, each one with its own evaluator.
+	 * @param topology
+	 *            The islands to which each island sends its solutions.
+	 * @param interval
+	 *            The number of iterations between two migrations.
+	 * @param acceptance
+	 *            When a received solution replaces the incumbent solution.
+	 */
+	public IslandModel(List<? extends AbstractIntTS> islands, Topology topology, int interval,
+			Acceptance acceptance) {
+
+		if (islands.size() < 2)
+			throw new IllegalArgumentException("an island model needs at least two islands");
+		if (interval < 1)
+			throw new IllegalArgumentException("the migration interval must be positive");
+		int size = islands.get(0).ObjFunction.getDomainSize();
+		for (AbstractIntTS ts : islands)
+			if (ts.ObjFunction.getDomainSize() != size)
+				throw new IllegalArgumentException("the islands solve instances of different sizes");
+		this.islands = islands;
+		this.topology = topology;
+		this.interval = interval;
+		this.acceptance = acceptance;
+
+		int n = islands.size();
+		this.mailboxes = new Mailbox[n];
+		this.neighbors = new int[n][];
+		for (int i = 0; i < n; i++) {
+			mailboxes[i] = new Mailbox();
+			switch (topology) {
+			case RING:
+				neighbors[i] = new int[] { (i + 1) % n };
+				break;
+			case BIDIRECTIONAL_RING:
+				neighbors[i] = n == 2 ? new int[] { 1 - i } : new int[] { (i + n - 1) % n, (i + 1) % n };
+				break;
+			default:
+				neighbors[i] = new int[n - 1];
+				for (int j = 0, k = 0; j < n; j++)
+					if (j != i)
+						neighbors[i][k++] = j;
+			}
+		}
+	}
+
+	/**
+	 * Sets the seed of the random topology.
+	 *
+	 * @param seed
+	 *            The seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Runs all the islands in parallel, each one until its own time limit.
+	 *
+	 * @return The best solution found by the islands.
+	 */
+	public IntSolution solve() {
+
+		ExecutorService pool = Executors.newFixedThreadPool(islands.size());
+		List<Future<IntSolution>> futures = new ArrayList<Future<IntSolution>>();
+		states.clear();
+		for (int i = 0; i < islands.size(); i++) {
+			final AbstractIntTS ts = islands.get(i);
+			Island island = new Island(i, ts);
+			states.add(island);
+			ts.island = island;
+			futures.add(pool.submit(new Callable<IntSolution>() {
+				@Override
+				public IntSolution call() throws Exception {
+					return ts.solve();
+				}
+			}));
+		}
+
+		IntSolution bestSol = null;
+		try {
+			for (Future<IntSolution> f : futures) {
+				IntSolution sol = f.get();
+				if (bestSol == null || sol.cost < bestSol.cost)
+					bestSol = sol;
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+			for (AbstractIntTS ts : islands)
+				ts.island = null;
+		}
+
+		return bestSol;
+	}
+
+	/**
+	 * @param i
+	 *            An island.
+	 * @return The number of solutions the island sent, received and accepted
+	 *         in the last run.
+	 */
+	public int[] getMigrations(int i) {
+		Island island = states.get(i);
+		return new int[] { island.sent, island.received, island.accepted };
+	}
+
+}
@@ -0,0 +1,302 @@
+package metaheuristics.tabusearch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Long-term memory of a Tabu Search over a binary problem whose elements are
+ * the indices 0..n-1. Instead of keeping an age per element that has to be
+ * incremented every iteration, it stores the iteration at which each element
+ * entered the solution, so the age is derived on demand. It also keeps, for
+ * each element, how many times it entered the solution (frequency) and for
+ * how many iterations it stayed in it (residence), which are the usual
+ * ingredients of restart, intensification and diversification strategies.
+ *
+ * The number of elements older than {@link #maxAge} is kept up to date through
+ * a queue of the insertions ordered by iteration, so every operation costs
+ * O(1) amortized.
+ */
+public class LongTermMemory {
+
+	/**
+	 * the number of elements of the problem domain.
+	 */
+	private final int size;
+
+	/**
+	 * the iteration at which each element entered the solution, or -1 if the
+	 * element is not in the solution.
+	 */
+	private final int[] enteredAt;
+
+	/**
+	 * the number of times each element entered the solution.
+	 */
+	private final int[] frequency;
+
+	/**
+	 * the number of iterations each element stayed in the solution, not
+	 * counting the current stay.
+	 */
+	private final long[] residence;
+
+	/**
+	 * whether each element is older than {@link #maxAge}.
+	 */
+	private final boolean[] old;
+
+	/**
+	 * the age above which an element is considered old.
+	 */
+	private final int maxAge;
+
+	/**
+	 * the current iteration.
+	 */
+	private int iteration;
+
+	/**
+	 * the iteration at which the ages were last reset.
+	 */
+	private int ageFloor;
+
+	/**
+	 * the number of old elements.
+	 */
+	private int oldCount;
+
+	/**
+	 * ring buffer of (element, iteration) insertions not yet old.
+	 */
+	private int[] queueElem, queueStamp;
+
+	private int head, count;
+
+	/**
+	 * Constructor for the LongTermMemory class.
+	 *
+	 * @param size
+	 *            The number of elements of the problem domain.
+	 * @param maxAge
+	 *            The age above which an element is considered old.
+	 */
+	public LongTermMemory(int size, int maxAge) {
+		this.size = size;
+		this.maxAge = maxAge;
+		this.enteredAt = new int[size];
+		this.frequency = new int[size];
+		this.residence = new long[size];
+		this.old = new boolean[size];
+		this.queueElem = new int[Math.max(16, size)];
+		this.queueStamp = new int[queueElem.length];
+		clear();
+	}
+
+	/**
+	 * Forgets everything, as if the solution were empty at iteration 0.
+	 */
+	public void clear() {
+		Arrays.fill(enteredAt, -1);
+		Arrays.fill(frequency, 0);
+		Arrays.fill(residence, 0);
+		Arrays.fill(old, false);
+		iteration = 0;
+		ageFloor = 0;
+		oldCount = 0;
+		head = 0;
+		count = 0;
+	}
+
+	/**
+	 * Advances the memory to the next iteration.
+	 */
+	public void nextIteration() {
+		iteration++;
+		while (count > 0 && queueStamp[head] < iteration - maxAge) {
+			int e = queueElem[head];
+			if (enteredAt[e] >= 0 && Math.max(enteredAt[e], ageFloor) == queueStamp[head] && !old[e]) {
+				old[e] = true;
+				oldCount++;
+			}
+			head = (head + 1) % queueElem.length;
+			count--;
+		}
+	}
+
+	/**
+	 * Records that an element entered the solution at the current iteration.
+	 *
+	 * @param i
+	 *            The element.
+	 */
+	public void insert(int i) {
+		enteredAt[i] = iteration;
+		frequency[i]++;
+		enqueue(i, iteration);
+	}
+
+	/**
+	 * Records that an element left the solution at the current iteration.
+	 *
+	 * @param i
+	 *            The element.
+	 */
+	public void remove(int i) {
+		residence[i] += iteration - enteredAt[i];
+		enteredAt[i] = -1;
+		if (old[i]) {
+			old[i] = false;
+			oldCount--;
+		}
+	}
+
+	/**
+	 * Sets the age of every element of the solution to zero. Frequencies and
+	 * residences are kept.
+	 */
+	public void resetAges() {
+		ageFloor = iteration;
+		oldCount = 0;
+		Arrays.fill(old, false);
+		head = 0;
+		count = 0;
+		for (int i = 0; i < size; i++)
+			if (enteredAt[i] >= 0)
+				enqueue(i, ageFloor);
+	}
+
+	/**
+	 * @param i
+	 *            An element.
+	 * @return The number of iterations since the element entered the solution
+	 *         (or since the last {@link #resetAges()}), 0 if it is not in the
+	 *         solution.
+	 */
+	public int age(int i) {
+		return enteredAt[i] < 0 ? 0 : iteration - Math.max(enteredAt[i], ageFloor);
+	}
+
+	/**
+	 * @param i
+	 *            An element.
+	 * @return true if the element is in the solution.
+	 */
+	public boolean contains(int i) {
+		return enteredAt[i] >= 0;
+	}
+
+	/**
+	 * @param i
+	 *            An element.
+	 * @return true if the element is in the solution for more than
+	 *         {@link #maxAge} iterations.
+	 */
+	public boolean isOld(int i) {
+		return old[i];
+	}
+
+	/**
+	 * @return The fraction of the domain elements that are old.
+	 */
+	public double oldFraction() {
+		return (double) oldCount / (double) size;
+	}
+
+	/**
+	 * @param i
+	 *            An element.
+	 * @return The number of times the element entered the solution.
+	 */
+	public int frequency(int i) {
+		return frequency[i];
+	}
+
+	/**
+	 * @param i
+	 *            An element.
+	 * @return The number of iterations the element stayed in the solution.
+	 */
+	public long residence(int i) {
+		return residence[i] + (enteredAt[i] < 0 ? 0 : iteration - enteredAt[i]);
+	}
+
+	/**
+	 * @return The current iteration.
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	private void enqueue(int e, int stamp) {
+		if (count == queueElem.length) {
+			int[] elems = new int[2 * count], stamps = new int[2 * count];
+			for (int k = 0; k < count; k++) {
+				elems[k] = queueElem[(head + k) % count];
+				stamps[k] = queueStamp[(head + k) % count];
+			}
+			queueElem = elems;
+			queueStamp = stamps;
+			head = 0;
+		}
+		int tail = (head + count) % queueElem.length;
+		queueElem[tail] = e;
+		queueStamp[tail] = stamp;
+		count++;
+	}
+
+	/**
+	 * Writes the whole memory, so that {@link #readState(DataInput)} restores
+	 * it exactly.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(iteration);
+		out.writeInt(ageFloor);
+		out.writeInt(oldCount);
+		for (int i = 0; i < size; i++) {
+			out.writeInt(enteredAt[i]);
+			out.writeInt(frequency[i]);
+			out.writeLong(residence[i]);
+			out.writeBoolean(old[i]);
+		}
+		out.writeInt(count);
+		for (int k = 0; k < count; k++) {
+			out.writeInt(queueElem[(head + k) % queueElem.length]);
+			out.writeInt(queueStamp[(head + k) % queueElem.length]);
+		}
+	}
+
+	/**
+	 * Restores the memory written by {@link #writeState(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void readState(DataInput in) throws IOException {
+		iteration = in.readInt();
+		ageFloor = in.readInt();
+		oldCount = in.readInt();
+		for (int i = 0; i < size; i++) {
+			enteredAt[i] = in.readInt();
+			frequency[i] = in.readInt();
+			residence[i] = in.readLong();
+			old[i] = in.readBoolean();
+		}
+		head = 0;
+		count = 0;
+		int n = in.readInt();
+		for (int k = 0; k < n; k++) {
+			int e = in.readInt();
+			enqueue(e, in.readInt());
+		}
+	}
+
+}
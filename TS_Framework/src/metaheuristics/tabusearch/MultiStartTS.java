@@ -0,0 +1,181 @@
+package metaheuristics.tabusearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import solutions.IntSolution;
+
+/**
+ * Multi-start driver for the Tabu Search. A GRASP-like construction stage
+ * builds many randomized starting solutions concurrently (each one with the
+ * constructive heuristic of {@link AbstractIntTS} and a RCL controlled by
+ * {@link AbstractIntTS#alpha}), discards duplicates, ranks them by cost and hands
+ * the best ones to independent TS workers.
+ *
+ * Since the evaluators keep internal state, every worker thread creates its
+ * own solver through the supplied factory.
+ */
+public class MultiStartTS {
+
+	/**
+	 * the factory of solvers, called once per worker.
+	 */
+	private final Callable<? extends AbstractIntTS> factory;
+
+	/**
+	 * the number of worker threads.
+	 */
+	private final int threads;
+
+	/**
+	 * the greediness parameter used by the construction stage.
+	 */
+	private final double alpha;
+
+	/**
+	 * the seed from which the seed of every construction and search is
+	 * derived.
+	 */
+	private long seed = 0;
+
+	/**
+	 * Constructor for the MultiStartTS class.
+	 *
+	 * @param factory
+	 *            Creates a new, independent solver each time it is called.
+	 * @param threads
+	 *            The number of worker threads.
+	 * @param alpha
+	 *            The greediness parameter of the randomized construction.
+	 */
+	public MultiStartTS(Callable<? extends AbstractIntTS> factory, int threads, double alpha) {
+		this.factory = factory;
+		this.threads = threads;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Sets the base seed of the construction and search stages.
+	 *
+	 * @param seed
+	 *            The base seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Builds {@code starts} randomized solutions in parallel and returns the
+	 * {@code k} best distinct ones, sorted by increasing cost.
+	 *
+	 * @param starts
+	 *            The number of constructions to perform.
+	 * @param k
+	 *            The maximum number of solutions to return.
+	 * @return The best distinct starting solutions.
+	 */
+	public List<IntSolution> construct(final int starts, int k) {
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<List<IntSolution>>> futures = new ArrayList<Future<List<IntSolution>>>();
+		for (int t = 0; t < threads; t++) {
+			final int first = t;
+			futures.add(pool.submit(new Callable<List<IntSolution>>() {
+				@Override
+				public List<IntSolution> call() throws Exception {
+					List<IntSolution> built = new ArrayList<IntSolution>();
+					AbstractIntTS ts = factory.call();
+					ts.setAlpha(alpha);
+					for (int s = first; s < starts; s += threads) {
+						ts.setSeed(seed + s);
+						built.add(new IntSolution(ts.constructiveHeuristic()));
+					}
+					return built;
+				}
+			}));
+		}
+
+		/* Collect the solutions, keeping one representative per element set */
+		Map<BitSet, IntSolution> distinct = new LinkedHashMap<BitSet, IntSolution>();
+		try {
+			for (Future<List<IntSolution>> f : futures) {
+				for (IntSolution sol : f.get()) {
+					BitSet key = new BitSet();
+					for (int e = 0; e < sol.size(); e++)
+						key.set(sol.get(e));
+					if (!distinct.containsKey(key))
+						distinct.put(key, sol);
+				}
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+
+		List<IntSolution> ranked = new ArrayList<IntSolution>(distinct.values());
+		Collections.sort(ranked, new Comparator<IntSolution>() {
+			@Override
+			public int compare(IntSolution a, IntSolution b) {
+				return Double.compare(a.cost, b.cost);
+			}
+		});
+
+		return new ArrayList<IntSolution>(ranked.subList(0, Math.min(k, ranked.size())));
+	}
+
+	/**
+	 * Runs the construction stage and then one TS worker from each of the
+	 * {@code k} best starting solutions, all in parallel.
+	 *
+	 * @param starts
+	 *            The number of constructions to perform.
+	 * @param k
+	 *            The number of TS workers.
+	 * @return The best solution found by the TS workers.
+	 */
+	public IntSolution solve(int starts, int k) {
+
+		List<IntSolution> initial = construct(starts, k);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<IntSolution>> futures = new ArrayList<Future<IntSolution>>();
+		for (int i = 0; i < initial.size(); i++) {
+			final IntSolution start = initial.get(i);
+			final long workerSeed = seed + starts + i;
+			futures.add(pool.submit(new Callable<IntSolution>() {
+				@Override
+				public IntSolution call() throws Exception {
+					AbstractIntTS ts = factory.call();
+					ts.setSeed(workerSeed);
+					return ts.solve(start);
+				}
+			}));
+		}
+
+		IntSolution bestSol = null;
+		try {
+			for (Future<IntSolution> f : futures) {
+				IntSolution sol = f.get();
+				if (bestSol == null || sol.cost < bestSol.cost)
+					bestSol = sol;
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+
+		return bestSol;
+	}
+
+}
@@ -0,0 +1,69 @@
+package metaheuristics.tabusearch;
+
+import java.util.Random;
+
+/**
+ * A random order in which to scan the positions 0..size-1 of a list, without
+ * shuffling or copying it. The k-th position visited is (start + k*stride)
+ * mod size, where the start is random and the stride is a random number
+ * coprime with the size, so every position is visited exactly once. Setting
+ * up a new order costs O(1) expected time and allocates nothing, which suits
+ * first-improvement scans that usually stop after a few candidates.
+ */
+public class RandomScanOrder {
+
+	/**
+	 * the number of positions.
+	 */
+	private int size;
+
+	/**
+	 * the first position visited.
+	 */
+	private int start;
+
+	/**
+	 * the distance between two consecutive positions visited.
+	 */
+	private int stride;
+
+	/**
+	 * Draws a new order for a list of the given size.
+	 *
+	 * @param size
+	 *            The number of positions.
+	 * @param rng
+	 *            The random number generator.
+	 */
+	public void reset(int size, Random rng) {
+		this.size = size;
+		if (size <= 1) {
+			start = 0;
+			stride = 1;
+			return;
+		}
+		start = rng.nextInt(size);
+		stride = 1 + rng.nextInt(size - 1);
+		while (gcd(stride, size) != 1)
+			stride = stride % (size - 1) + 1;
+	}
+
+	/**
+	 * @param k
+	 *            The rank of a visit, from 0 to size-1.
+	 * @return The position visited in the k-th place.
+	 */
+	public int get(int k) {
+		return (int) ((start + (long) k * stride) % size);
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+}
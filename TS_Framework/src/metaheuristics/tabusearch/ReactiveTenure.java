@@ -0,0 +1,183 @@
+package metaheuristics.tabusearch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reactive tabu tenure, in the spirit of the Reactive Tabu Search of Battiti
+ * and Tecchiolli. The hashes of the solutions visited are kept in a compact
+ * open-addressing table; the tenure grows whenever the search revisits a
+ * solution and shrinks after a long stretch of iterations without
+ * repetitions.
+ */
+public class ReactiveTenure {
+
+	/**
+	 * the bounds of the tenure.
+	 */
+	private final int minTenure, maxTenure;
+
+	/**
+	 * the number of iterations without repetitions after which the tenure
+	 * shrinks.
+	 */
+	private final int stretch;
+
+	/**
+	 * the largest number of slots of the table; when it fills up, the table
+	 * is emptied.
+	 */
+	private final int maxCapacity;
+
+	/**
+	 * the hashes of the visited solutions (0 marks an empty slot).
+	 */
+	private long[] table;
+
+	/**
+	 * the number of occupied slots.
+	 */
+	private int count;
+
+	/**
+	 * the current tenure.
+	 */
+	private int tenure;
+
+	/**
+	 * the number of iterations since the last change of the tenure.
+	 */
+	private int sinceChange;
+
+	/**
+	 * Constructor for the ReactiveTenure class.
+	 *
+	 * @param initialTenure
+	 *            The tenure at the start of the search.
+	 * @param minTenure
+	 *            The smallest tenure.
+	 * @param maxTenure
+	 *            The largest tenure.
+	 * @param stretch
+	 *            The number of iterations without repetitions after which the
+	 *            tenure shrinks.
+	 */
+	public ReactiveTenure(int initialTenure, int minTenure, int maxTenure, int stretch) {
+		this.minTenure = minTenure;
+		this.maxTenure = maxTenure;
+		this.stretch = stretch;
+		this.maxCapacity = 1 << 20;
+		this.table = new long[1 << 10];
+		this.tenure = Math.max(minTenure, Math.min(maxTenure, initialTenure));
+	}
+
+	/**
+	 * Records the solution reached by an iteration and adapts the tenure.
+	 *
+	 * @param hash
+	 *            The hash of the solution.
+	 * @return The tenure for the next iteration.
+	 */
+	public int update(long hash) {
+		if (hash == 0)
+			hash = 1;
+		sinceChange++;
+		if (!insert(hash)) {
+			tenure = Math.min(maxTenure, (int) Math.ceil(tenure * 1.1) + 1);
+			sinceChange = 0;
+		} else if (sinceChange > stretch) {
+			tenure = Math.max(minTenure, (int) (tenure * 0.9));
+			sinceChange = 0;
+		}
+		return tenure;
+	}
+
+	/**
+	 * @return The current tenure.
+	 */
+	public int getTenure() {
+		return tenure;
+	}
+
+	/**
+	 * Inserts a hash in the table.
+	 *
+	 * @return false if the hash was already there.
+	 */
+	private boolean insert(long hash) {
+		int mask = table.length - 1;
+		int p = (int) (hash ^ (hash >>> 32)) & mask;
+		while (table[p] != 0) {
+			if (table[p] == hash)
+				return false;
+			p = (p + 1) & mask;
+		}
+		table[p] = hash;
+		if (++count * 2 > table.length) {
+			if (table.length < maxCapacity)
+				rehash(table.length * 2);
+			else {
+				Arrays.fill(table, 0);
+				count = 0;
+			}
+		}
+		return true;
+	}
+
+	private void rehash(int capacity) {
+		long[] old = table;
+		table = new long[capacity];
+		int mask = capacity - 1;
+		for (long h : old) {
+			if (h == 0)
+				continue;
+			int p = (int) (h ^ (h >>> 32)) & mask;
+			while (table[p] != 0)
+				p = (p + 1) & mask;
+			table[p] = h;
+		}
+	}
+
+	/**
+	 * Writes the tenure, its counters and the occupied slots of the table.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(tenure);
+		out.writeInt(sinceChange);
+		out.writeInt(table.length);
+		out.writeInt(count);
+		for (int p = 0; p < table.length; p++) {
+			if (table[p] != 0) {
+				out.writeInt(p);
+				out.writeLong(table[p]);
+			}
+		}
+	}
+
+	/**
+	 * Restores the state written by {@link #writeState(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void readState(DataInput in) throws IOException {
+		tenure = in.readInt();
+		sinceChange = in.readInt();
+		table = new long[in.readInt()];
+		count = in.readInt();
+		for (int k = 0; k < count; k++) {
+			int p = in.readInt();
+			table[p] = in.readLong();
+		}
+	}
+
+}
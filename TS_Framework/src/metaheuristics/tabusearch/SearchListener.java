@@ -0,0 +1,23 @@
+package metaheuristics.tabusearch;
+
+import solutions.IntSolution;
+
+/**
+ * Receives the progress of the main loop of an {@link AbstractIntTS}. The
+ * methods are called from the search thread, so they should return quickly.
+ */
+public interface SearchListener {
+
+	/**
+	 * Called whenever the best solution improves, and once when the main loop
+	 * starts.
+	 *
+	 * @param bestSol
+	 *            The best solution, which must not be modified and is only
+	 *            valid during the call.
+	 * @param elapsed
+	 *            The time spent by the main loop, in milliseconds.
+	 */
+	void bestImproved(IntSolution bestSol, long elapsed);
+
+}
@@ -0,0 +1,71 @@
+package metaheuristics.tabusearch;
+
+import java.util.Random;
+
+import solutions.IntSet;
+
+/**
+ * Zobrist hash of a binary solution whose elements are the indices 0..n-1.
+ * Each element has a random 64-bit key and the hash of a solution is the
+ * exclusive or of the keys of its elements, so it is updated in O(1) when an
+ * element enters or leaves the solution.
+ */
+public class ZobristHash {
+
+	/**
+	 * the random key of each element.
+	 */
+	private final long[] keys;
+
+	/**
+	 * the hash of the current solution.
+	 */
+	private long hash;
+
+	/**
+	 * Constructor for the ZobristHash class. The hash starts at the empty
+	 * solution.
+	 *
+	 * @param size
+	 *            The number of elements of the problem domain.
+	 * @param seed
+	 *            The seed of the random keys.
+	 */
+	public ZobristHash(int size, long seed) {
+		Random rng = new Random(seed);
+		keys = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = rng.nextLong();
+		hash = 0;
+	}
+
+	/**
+	 * Moves the hash to the given solution.
+	 *
+	 * @param sol
+	 *            The elements of the solution.
+	 */
+	public void reset(IntSet sol) {
+		hash = 0;
+		for (int k = 0; k < sol.size(); k++)
+			hash ^= keys[sol.get(k)];
+	}
+
+	/**
+	 * Updates the hash after an element enters or leaves the solution.
+	 *
+	 * @param i
+	 *            The element.
+	 */
+	public void flip(int i) {
+		hash ^= keys[i];
+	}
+
+	/**
+	 * @return The hash of the current solution.
+	 */
+	public long get() {
+		return hash;
+	}
+
+}
@@ -0,0 +1,210 @@
+package problems;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of conflict constraints over the binary variables 0..n-1. Each
+ * conflict is a set of variables (a hyperedge of any arity) that cannot all be
+ * in the solution at the same time. The conflicts are kept in compressed
+ * sparse row form, together with the reverse index from each variable to the
+ * conflicts it belongs to, so the checks of a variable only visit its own
+ * conflicts. The structure is immutable and can be shared by several solvers;
+ * the incremental bookkeeping of a solution is done by {@link ConflictState}.
+ *
+ * A conflict file holds the number of conflicts m followed by m conflicts,
+ * each one given by its arity k and its k variables (0-based).
+ */
+public class ConflictConstraints {
+
+	/**
+	 * the number of variables.
+	 */
+	private final int size;
+
+	/**
+	 * the variables of conflict c are conflictVars[conflictStart[c] ..
+	 * conflictStart[c+1]-1].
+	 */
+	private final int[] conflictStart, conflictVars;
+
+	/**
+	 * the conflicts of variable i are varConflicts[varStart[i] ..
+	 * varStart[i+1]-1].
+	 */
+	private final int[] varStart, varConflicts;
+
+	/**
+	 * Builds the constraints from a list of conflicts. Repeated variables
+	 * within a conflict are merged.
+	 *
+	 * @param size
+	 *            the number of variables.
+	 * @param conflicts
+	 *            the variables of each conflict.
+	 */
+	public ConflictConstraints(int size, List<int[]> conflicts) {
+
+		this.size = size;
+		int m = conflicts.size();
+		conflictStart = new int[m + 1];
+		int[][] sets = new int[m][];
+		for (int c = 0; c < m; c++) {
+			int[] vars = conflicts.get(c).clone();
+			Arrays.sort(vars);
+			int k = 0;
+			for (int p = 0; p < vars.length; p++) {
+				if (vars[p] < 0 || vars[p] >= size)
+					throw new IllegalArgumentException("variable " + vars[p] + " of conflict " + c + " out of range");
+				if (k == 0 || vars[p] != vars[k - 1])
+					vars[k++] = vars[p];
+			}
+			sets[c] = Arrays.copyOf(vars, k);
+			conflictStart[c + 1] = conflictStart[c] + k;
+		}
+
+		conflictVars = new int[conflictStart[m]];
+		varStart = new int[size + 1];
+		for (int c = 0; c < m; c++) {
+			System.arraycopy(sets[c], 0, conflictVars, conflictStart[c], sets[c].length);
+			for (int v : sets[c])
+				varStart[v + 1]++;
+		}
+		for (int i = 0; i < size; i++)
+			varStart[i + 1] += varStart[i];
+		varConflicts = new int[varStart[size]];
+		int[] fill = Arrays.copyOf(varStart, size);
+		for (int c = 0; c < m; c++)
+			for (int v : sets[c])
+				varConflicts[fill[v]++] = c;
+	}
+
+	/**
+	 * Reads the constraints from a conflict file.
+	 *
+	 * @param filename
+	 *            Name of the conflict file.
+	 * @param size
+	 *            the number of variables.
+	 * @return the constraints.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public static ConflictConstraints read(String filename, int size) throws IOException {
+
+		try (Reader fileInst = new BufferedReader(new FileReader(filename))) {
+			StreamTokenizer stok = new StreamTokenizer(fileInst);
+			int m = (int) next(stok, filename);
+			List<int[]> conflicts = new ArrayList<int[]>(m);
+			for (int c = 0; c < m; c++) {
+				int[] vars = new int[(int) next(stok, filename)];
+				for (int p = 0; p < vars.length; p++)
+					vars[p] = (int) next(stok, filename);
+				conflicts.add(vars);
+			}
+			return new ConflictConstraints(size, conflicts);
+		}
+	}
+
+	private static double next(StreamTokenizer stok, String filename) throws IOException {
+		if (stok.nextToken() != StreamTokenizer.TT_NUMBER)
+			throw new IOException("malformed conflict file " + filename + " at line " + stok.lineno());
+		return stok.nval;
+	}
+
+	/**
+	 * @return the number of variables.
+	 */
+	public int getDomainSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of conflicts.
+	 */
+	public int getConflictCount() {
+		return conflictStart.length - 1;
+	}
+
+	/**
+	 * @param c
+	 *            a conflict.
+	 * @return the number of variables of the conflict.
+	 */
+	public int arity(int c) {
+		return conflictStart[c + 1] - conflictStart[c];
+	}
+
+	/**
+	 * @param c
+	 *            a conflict.
+	 * @param p
+	 *            a position, from 0 to arity(c)-1.
+	 * @return the p-th variable of the conflict, in increasing order.
+	 */
+	public int variable(int c, int p) {
+		return conflictVars[conflictStart[c] + p];
+	}
+
+	/**
+	 * @param i
+	 *            a variable.
+	 * @return the number of conflicts the variable belongs to.
+	 */
+	public int degree(int i) {
+		return varStart[i + 1] - varStart[i];
+	}
+
+	/**
+	 * @param i
+	 *            a variable.
+	 * @param k
+	 *            a position, from 0 to degree(i)-1.
+	 * @return the k-th conflict of the variable.
+	 */
+	public int conflict(int i, int k) {
+		return varConflicts[varStart[i] + k];
+	}
+
+	/**
+	 * Tells whether a variable can be set to one without completing a
+	 * conflict, by scanning its conflicts against a binary vector. Solvers
+	 * that move step by step should use a {@link ConflictState} instead.
+	 *
+	 * @param i
+	 *            the variable under consideration for insertion.
+	 * @param x
+	 *            the binary vector of the solution.
+	 * @return true if the insertion is feasible.
+	 */
+	public boolean canInsert(int i, boolean[] x) {
+		for (int k = varStart[i]; k < varStart[i + 1]; k++) {
+			int c = varConflicts[k];
+			boolean complete = true;
+			for (int p = conflictStart[c]; p < conflictStart[c + 1] && complete; p++)
+				complete = conflictVars[p] == i || x[conflictVars[p]];
+			if (complete)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Prints the conflicts, one per line.
+	 */
+	public void print() {
+		for (int c = 0; c < getConflictCount(); c++) {
+			StringBuilder sb = new StringBuilder();
+			for (int p = conflictStart[c]; p < conflictStart[c + 1]; p++)
+				sb.append(p > conflictStart[c] ? " " : "").append(conflictVars[p]);
+			System.out.println(sb);
+		}
+	}
+
+}
@@ -0,0 +1,243 @@
+package problems;
+
+import java.util.Arrays;
+
+import solutions.IntSet;
+
+/**
+ * Incremental feasibility bookkeeping of a solution under a set of
+ * {@link ConflictConstraints}. For every conflict it keeps how many of its
+ * variables are in the solution, and for every variable outside the solution
+ * how many conflicts it would complete if inserted (its blockers). Insertions
+ * and removals update both counters in O(degree) for conflicts of bounded
+ * arity, and the feasibility of an insertion is answered in O(1).
+ */
+public class ConflictState {
+
+	/**
+	 * the constraints being followed.
+	 */
+	private final ConflictConstraints constraints;
+
+	/**
+	 * whether each variable is in the solution.
+	 */
+	private final boolean[] x;
+
+	/**
+	 * the number of variables of each conflict that are in the solution.
+	 */
+	private final int[] inCount;
+
+	/**
+	 * for each variable outside the solution, the number of conflicts whose
+	 * other variables are all in the solution.
+	 */
+	private final int[] blockers;
+
+	/**
+	 * scratch counters of {@link #freedBy(int, int[])}.
+	 */
+	private final int[] scratch;
+
+	/**
+	 * Constructor for the ConflictState class. The state starts at the empty
+	 * solution.
+	 *
+	 * @param constraints
+	 *            the constraints to follow.
+	 */
+	public ConflictState(ConflictConstraints constraints) {
+		this.constraints = constraints;
+		this.x = new boolean[constraints.getDomainSize()];
+		this.inCount = new int[constraints.getConflictCount()];
+		this.blockers = new int[constraints.getDomainSize()];
+		this.scratch = new int[constraints.getDomainSize()];
+		clear();
+	}
+
+	/**
+	 * Moves the state to the empty solution.
+	 */
+	public void clear() {
+		Arrays.fill(x, false);
+		Arrays.fill(inCount, 0);
+		Arrays.fill(blockers, 0);
+		for (int c = 0; c < inCount.length; c++)
+			if (constraints.arity(c) == 1)
+				blockers[constraints.variable(c, 0)]++;
+	}
+
+	/**
+	 * Moves the state to the given solution.
+	 *
+	 * @param sol
+	 *            the elements of the solution.
+	 */
+	public void reset(IntSet sol) {
+		clear();
+		for (int k = 0; k < sol.size(); k++)
+			insert(sol.get(k));
+	}
+
+	/**
+	 * Records that a variable entered the solution.
+	 *
+	 * @param i
+	 *            the variable.
+	 */
+	public void insert(int i) {
+		x[i] = true;
+		for (int k = 0; k < constraints.degree(i); k++) {
+			int c = constraints.conflict(i, k);
+			int arity = constraints.arity(c);
+			if (inCount[c] == arity - 1)
+				blockers[i]--;
+			if (++inCount[c] == arity - 1)
+				blockers[outsider(c)]++;
+		}
+	}
+
+	/**
+	 * Records that a variable left the solution.
+	 *
+	 * @param i
+	 *            the variable.
+	 */
+	public void remove(int i) {
+		for (int k = 0; k < constraints.degree(i); k++) {
+			int c = constraints.conflict(i, k);
+			int arity = constraints.arity(c);
+			if (inCount[c] == arity - 1)
+				blockers[outsider(c)]--;
+			if (--inCount[c] == arity - 1)
+				blockers[i]++;
+		}
+		x[i] = false;
+	}
+
+	/**
+	 * Updates the state after a variable enters or leaves the solution.
+	 *
+	 * @param i
+	 *            the variable.
+	 */
+	public void flip(int i) {
+		if (x[i])
+			remove(i);
+		else
+			insert(i);
+	}
+
+	/**
+	 * @param i
+	 *            a variable.
+	 * @return true if the variable is in the solution.
+	 */
+	public boolean contains(int i) {
+		return x[i];
+	}
+
+	/**
+	 * @param i
+	 *            a variable outside the solution.
+	 * @return true if the variable can be inserted without completing a
+	 *         conflict.
+	 */
+	public boolean canInsert(int i) {
+		return blockers[i] == 0;
+	}
+
+	/**
+	 * @param i
+	 *            a variable in the solution.
+	 * @return the number of conflicts of the variable whose variables are all
+	 *         in the solution, which is zero in a feasible solution.
+	 */
+	public int violations(int i) {
+		int n = 0;
+		for (int k = 0; k < constraints.degree(i); k++) {
+			int c = constraints.conflict(i, k);
+			if (inCount[c] == constraints.arity(c))
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @param i
+	 *            the first variable under consideration for insertion.
+	 * @param j
+	 *            the second variable under consideration for insertion.
+	 * @return true if both variables can be inserted together.
+	 */
+	public boolean canInsertPair(int i, int j) {
+		if (blockers[i] != 0 || blockers[j] != 0)
+			return false;
+		for (int k = 0; k < constraints.degree(j); k++) {
+			int c = constraints.conflict(j, k);
+			if (inCount[c] == constraints.arity(c) - 2 && outsiderOtherThan(c, j) == i)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lists the variables outside the solution that are infeasible now but
+	 * become feasible if a variable leaves the solution.
+	 *
+	 * @param j
+	 *            a variable of the solution.
+	 * @param out
+	 *            receives the freed variables.
+	 * @return the number of freed variables.
+	 */
+	public int freedBy(int j, int[] out) {
+		int n = 0;
+		for (int k = 0; k < constraints.degree(j); k++) {
+			int c = constraints.conflict(j, k);
+			if (inCount[c] == constraints.arity(c) - 1) {
+				int v = outsider(c);
+				if (++scratch[v] == blockers[v])
+					out[n++] = v;
+			}
+		}
+		for (int k = 0; k < constraints.degree(j); k++) {
+			int c = constraints.conflict(j, k);
+			if (inCount[c] == constraints.arity(c) - 1)
+				scratch[outsider(c)] = 0;
+		}
+		return n;
+	}
+
+	/**
+	 * @return the constraints being followed.
+	 */
+	public ConflictConstraints getConstraints() {
+		return constraints;
+	}
+
+	/**
+	 * The only variable of a conflict that is outside the solution.
+	 */
+	private int outsider(int c) {
+		for (int p = 0; p < constraints.arity(c); p++)
+			if (!x[constraints.variable(c, p)])
+				return constraints.variable(c, p);
+		return -1;
+	}
+
+	/**
+	 * The only variable of a conflict, besides j, that is outside the
+	 * solution, assuming j is outside too.
+	 */
+	private int outsiderOtherThan(int c, int j) {
+		for (int p = 0; p < constraints.arity(c); p++) {
+			int v = constraints.variable(c, p);
+			if (v != j && !x[v])
+				return v;
+		}
+		return -1;
+	}
+
+}
@@ -1,7 +1,5 @@
 package problems;
 
-import java.util.ArrayList;
-
 import solutions.Solution;
 
 /**
@@ -77,6 +75,4 @@ public abstract class Evaluator<E> {
 	 */
 	public abstract Double evaluateExchangeCost(E elemIn, E elemOut, Solution<E> sol);
 
-	public abstract ArrayList<Integer> GetCL(ArrayList<Integer> incumbentSol);
-
 }
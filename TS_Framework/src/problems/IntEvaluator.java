@@ -0,0 +1,86 @@
+package problems;
+
+import solutions.IntSolution;
+
+/**
+ * Primitive-specialized {@link Evaluator} for problems whose elements are the
+ * integers 0..n-1. Solutions are {@link IntSolution}s and costs are returned
+ * as double, so evaluating moves neither boxes elements nor costs. The generic
+ * methods inherited from {@link Evaluator} are still available for code that
+ * works with {@link solutions.Solution}.
+ */
+public abstract class IntEvaluator extends Evaluator<Integer> {
+
+	/**
+	 * The evaluating function is responsible for returning the mapping value of
+	 * a solution.
+	 *
+	 * @param sol
+	 *            the solution under evaluation.
+	 * @return the evaluation of a solution.
+	 */
+	public abstract double evaluate(IntSolution sol);
+
+	/**
+	 * Evaluates the cost variation of inserting an element into a solution
+	 * according to an objective function.
+	 *
+	 * @param elem
+	 *            the element under consideration for insertion.
+	 * @param sol
+	 *            the solution for which the element insertion is being
+	 *            evaluated.
+	 * @return the cost variation resulting from the element insertion into the
+	 *         solution.
+	 */
+	public abstract double evaluateInsertionCost(int elem, IntSolution sol);
+
+	/**
+	 * Evaluates the cost variation of removing an element from a solution
+	 * according to an objective function.
+	 *
+	 * @param elem
+	 *            the element under consideration for removal.
+	 * @param sol
+	 *            the solution for which the element removal is being
+	 *            evaluated.
+	 * @return the cost variation resulting from the element removal of the
+	 *         solution.
+	 */
+	public abstract double evaluateRemovalCost(int elem, IntSolution sol);
+
+	/**
+	 * Evaluates the cost variation of exchanging candidates, one being
+	 * considered to enter the solution (elemIn) and the other being considered
+	 * for removal (elemOut).
+	 *
+	 * @param elemIn
+	 *            the element under consideration for insertion.
+	 * @param elemOut
+	 *            the element under consideration for removal.
+	 * @param sol
+	 *            the solution for which the elements exchange is being
+	 *            evaluated.
+	 * @return the cost variation resulting from the elements exchange.
+	 */
+	public abstract double evaluateExchangeCost(int elemIn, int elemOut, IntSolution sol);
+
+	/**
+	 * Evaluates, in a single call, the cost variation of inserting each one
+	 * of an array of candidates into a solution.
+	 *
+	 * @param cands
+	 *            the elements under consideration for insertion.
+	 * @param count
+	 *            the number of candidates (a prefix of cands) to evaluate.
+	 * @param sol
+	 *            the solution for which the insertions are being evaluated.
+	 * @param out
+	 *            receives the cost variation of each candidate.
+	 */
+	public void evaluateInsertionCosts(int[] cands, int count, IntSolution sol, double[] out) {
+		for (int k = 0; k < count; k++)
+			out[k] = evaluateInsertionCost(cands[k], sol);
+	}
+
+}
@@ -0,0 +1,315 @@
+package problems.qbf;
+
+import java.util.Arrays;
+
+import problems.ConflictConstraints;
+import solutions.IntSolution;
+
+/**
+ * Depth-first branch and bound for the maximization of a QBF, optionally
+ * under conflict constraints, bounded by the {@link RoofDuality} of the QBF
+ * restricted to the free variables. It is meant to run alongside a heuristic
+ * search: the tree is explored in slices, each one pruned with the value of
+ * the best solution known by the search at that moment, and it only takes a
+ * share of the time of the search. When the tree is exhausted the best
+ * solution known is optimal; until then {@link #getUpperBound()} bounds the
+ * optimum.
+ *
+ * The variables are branched in decreasing order of the magnitude of their
+ * coefficients, trying the value one first.
+ */
+public class BranchAndBound {
+
+	/**
+	 * Tolerance of the comparisons between values.
+	 */
+	private static final double EPS = 1e-9;
+
+	/**
+	 * Dimension of the domain.
+	 */
+	private final int size;
+
+	/**
+	 * The matrix of coefficients.
+	 */
+	private final double[][] A;
+
+	/**
+	 * The conflict constraints, or null.
+	 */
+	private final ConflictConstraints conflicts;
+
+	/**
+	 * The branching order of the variables.
+	 */
+	private final int[] order;
+
+	/**
+	 * The value of each fixed variable, or -1.
+	 */
+	private final int[] fixed;
+
+	/**
+	 * The variables fixed to one, for the feasibility checks.
+	 */
+	private final boolean[] ones;
+
+	/**
+	 * For each free variable, its linear coefficient once the fixed variables
+	 * are substituted.
+	 */
+	private final double[] linear;
+
+	/**
+	 * The value of the fixed variables.
+	 */
+	private double constant = 0.0;
+
+	/**
+	 * The bound of the node at each level of the path being explored, and the
+	 * number of its children already visited.
+	 */
+	private final double[] levelBound;
+	private final int[] children;
+
+	/**
+	 * The level of the node being explored, -1 once the tree is exhausted.
+	 */
+	private int depth;
+
+	/**
+	 * The value of the best solution known, from the search or from the
+	 * leaves of the tree.
+	 */
+	private double best = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * The best solution found at a leaf of the tree, or null.
+	 */
+	private IntSolution bestLeaf = null;
+
+	/**
+	 * The number of nodes visited.
+	 */
+	private long nodes = 0;
+
+	/**
+	 * The share of the elapsed time the exploration may take.
+	 */
+	private double share = 0.1;
+
+	/**
+	 * The time of the first slice and the time spent in the exploration, in
+	 * nanoseconds.
+	 */
+	private long startTime = -1, busyTime = 0;
+
+	/**
+	 * Constructor for the BranchAndBound class. The root node is bounded
+	 * here.
+	 *
+	 * @param A
+	 *            The matrix of coefficients of the QBF.
+	 * @param conflicts
+	 *            The conflict constraints, or null.
+	 */
+	public BranchAndBound(double[][] A, ConflictConstraints conflicts) {
+
+		this.A = A;
+		this.size = A.length;
+		this.conflicts = conflicts;
+		this.fixed = new int[size];
+		Arrays.fill(fixed, -1);
+		this.ones = new boolean[size];
+		this.linear = new double[size];
+		for (int i = 0; i < size; i++)
+			linear[i] = A[i][i];
+
+		final double[] weight = new double[size];
+		Integer[] sorted = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = i;
+			for (int j = 0; j < size; j++)
+				weight[i] += Math.abs(A[i][j]) + Math.abs(A[j][i]);
+		}
+		Arrays.sort(sorted, (a, b) -> Double.compare(weight[b], weight[a]));
+		this.order = new int[size];
+		for (int k = 0; k < size; k++)
+			order[k] = sorted[k];
+
+		this.levelBound = new double[size + 1];
+		this.children = new int[size + 1];
+		this.depth = 0;
+		levelBound[0] = bound();
+	}
+
+	/**
+	 * Sets the share of the elapsed time, counted from the first call to
+	 * {@link #improve(double)}, that the exploration may take. The default is
+	 * 0.1.
+	 *
+	 * @param share
+	 *            The share, between 0 and 1.
+	 */
+	public void setShare(double share) {
+		this.share = share;
+	}
+
+	/**
+	 * Explores the tree for as long as its share of the time allows.
+	 *
+	 * @param incumbentValue
+	 *            The value of the best solution known by the search.
+	 * @return true if a solution better than incumbentValue was found at a
+	 *         leaf of the tree (see {@link #getBestLeaf()}).
+	 */
+	public boolean improve(double incumbentValue) {
+
+		long now = System.nanoTime();
+		if (startTime < 0)
+			startTime = now;
+		if (isFinished() || busyTime > share * (now - startTime))
+			return false;
+
+		best = Math.max(best, incumbentValue);
+		double before = best;
+		long deadline = now + Math.max(1000000, (long) (share * (now - startTime)) - busyTime);
+		do {
+			for (int k = 0; k < 16 && depth >= 0; k++)
+				visit();
+		} while (depth >= 0 && System.nanoTime() < deadline);
+		busyTime += System.nanoTime() - now;
+
+		return best > before + EPS && best > incumbentValue + EPS;
+	}
+
+	/**
+	 * Explores the whole tree, without time limit.
+	 *
+	 * @param incumbentValue
+	 *            The value of a known solution, or -infinity.
+	 * @return The optimal value.
+	 */
+	public double solve(double incumbentValue) {
+		best = Math.max(best, incumbentValue);
+		while (depth >= 0)
+			visit();
+		return best;
+	}
+
+	/**
+	 * Visits the next node of the tree.
+	 */
+	private void visit() {
+
+		if (children[depth] == 2 || depth == size) {
+			/* Every child of the node was visited */
+			if (--depth >= 0)
+				unfix(order[depth]);
+			return;
+		}
+
+		int v = order[depth];
+		int value = children[depth]++ == 0 ? 1 : 0;
+		if (value == 1 && conflicts != null && !conflicts.canInsert(v, ones))
+			return;
+		fix(v, value);
+		nodes++;
+		double ub = depth + 1 == size ? constant : bound();
+		if (ub <= best + EPS) {
+			unfix(v);
+			return;
+		}
+		if (depth + 1 == size) {
+			best = ub;
+			bestLeaf = new IntSolution(size);
+			for (int i = 0; i < size; i++)
+				if (fixed[i] == 1)
+					bestLeaf.add(i);
+			bestLeaf.cost = ub;
+			unfix(v);
+			return;
+		}
+		depth++;
+		children[depth] = 0;
+		levelBound[depth] = ub;
+	}
+
+	private void fix(int v, int value) {
+		fixed[v] = value;
+		if (value == 1) {
+			ones[v] = true;
+			constant += linear[v];
+			for (int i = 0; i < size; i++)
+				if (fixed[i] < 0)
+					linear[i] += A[i][v] + A[v][i];
+		}
+	}
+
+	private void unfix(int v) {
+		if (fixed[v] == 1) {
+			ones[v] = false;
+			for (int i = 0; i < size; i++)
+				if (fixed[i] < 0)
+					linear[i] -= A[i][v] + A[v][i];
+			constant -= linear[v];
+		}
+		fixed[v] = -1;
+	}
+
+	/**
+	 * The roof dual bound of the QBF over the free variables.
+	 */
+	private double bound() {
+		int free[] = new int[size];
+		int m = 0;
+		for (int i = 0; i < size; i++)
+			if (fixed[i] < 0)
+				free[m++] = i;
+		double[][] B = new double[m][m];
+		for (int a = 0; a < m; a++) {
+			B[a][a] = linear[free[a]];
+			for (int b = a + 1; b < m; b++)
+				B[a][b] = A[free[a]][free[b]] + A[free[b]][free[a]];
+		}
+		return constant + new RoofDuality(B).getUpperBound();
+	}
+
+	/**
+	 * @return true if the tree is exhausted, in which case the best solution
+	 *         known is optimal.
+	 */
+	public boolean isFinished() {
+		return depth < 0;
+	}
+
+	/**
+	 * @return An upper bound on the optimal value: the value of the best
+	 *         solution known once the tree is exhausted, and otherwise the
+	 *         largest bound of a node with unexplored children.
+	 */
+	public double getUpperBound() {
+		double ub = best;
+		for (int k = 0; k <= depth && k < size; k++)
+			if (children[k] < 2)
+				ub = Math.max(ub, levelBound[k]);
+		return ub;
+	}
+
+	/**
+	 * @return The best solution found at a leaf of the tree, with its value
+	 *         as cost, or null.
+	 */
+	public IntSolution getBestLeaf() {
+		return bestLeaf;
+	}
+
+	/**
+	 * @return The number of nodes visited.
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+}
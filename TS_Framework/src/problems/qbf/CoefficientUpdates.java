@@ -0,0 +1,128 @@
+package problems.qbf;
+
+import java.util.Arrays;
+
+/**
+ * A batch of changes of the coefficients of a QBF, requested by any thread
+ * and applied by the search between two moves. Each change sets A[i][j] to a
+ * new value; {@link #apply(double[][], QBFDeltaCache)} patches the matrix and
+ * the one-flip cost variations in O(1) per change, so the search goes on over
+ * the new objective function without rebuilding anything.
+ */
+public class CoefficientUpdates {
+
+	/**
+	 * the changes requested and not yet taken by the search.
+	 */
+	private int[] rows = new int[16], cols = new int[16];
+	private double[] values = new double[16];
+	private int count;
+
+	/**
+	 * whether changes are waiting, read without locking by the search.
+	 */
+	private volatile boolean pending;
+
+	/**
+	 * the changes taken by the last {@link #apply(double[][], QBFDeltaCache)},
+	 * with the variation of the coupling of each one.
+	 */
+	private int[] appliedRows = new int[16], appliedCols = new int[16];
+	private double[] variations = new double[16];
+	private int applied;
+
+	/**
+	 * Requests a change of a coefficient. A later change of the same
+	 * coefficient overrides it.
+	 *
+	 * @param i
+	 *            The row of the coefficient.
+	 * @param j
+	 *            The column of the coefficient.
+	 * @param value
+	 *            The new value of A[i][j].
+	 */
+	public synchronized void add(int i, int j, double value) {
+		if (count == rows.length) {
+			rows = Arrays.copyOf(rows, 2 * count);
+			cols = Arrays.copyOf(cols, 2 * count);
+			values = Arrays.copyOf(values, 2 * count);
+		}
+		rows[count] = i;
+		cols[count] = j;
+		values[count] = value;
+		count++;
+		pending = true;
+	}
+
+	/**
+	 * @return true if changes are waiting to be applied.
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * Applies the waiting changes to the matrix of coefficients and to the
+	 * one-flip cost variations that follow it. The variables whose cost
+	 * variation changed are the rows and columns of the changes applied (see
+	 * {@link #row(int)} and {@link #column(int)}).
+	 *
+	 * @param A
+	 *            The matrix of coefficients, modified in place.
+	 * @param cache
+	 *            The one-flip cost variations built over the matrix.
+	 * @return The number of changes applied.
+	 */
+	public int apply(double[][] A, QBFDeltaCache cache) {
+		synchronized (this) {
+			if (appliedRows.length < count) {
+				appliedRows = new int[rows.length];
+				appliedCols = new int[rows.length];
+				variations = new double[rows.length];
+			}
+			applied = count;
+			for (int k = 0; k < count; k++) {
+				int i = rows[k], j = cols[k];
+				appliedRows[k] = i;
+				appliedCols[k] = j;
+				variations[k] = values[k] - A[i][j];
+				A[i][j] = values[k];
+			}
+			count = 0;
+			pending = false;
+		}
+		for (int k = 0; k < applied; k++)
+			variations[k] = cache.update(appliedRows[k], appliedCols[k], variations[k]);
+		return applied;
+	}
+
+	/**
+	 * @param k
+	 *            A change taken by the last apply.
+	 * @return The row of the coefficient.
+	 */
+	public int row(int k) {
+		return appliedRows[k];
+	}
+
+	/**
+	 * @param k
+	 *            A change taken by the last apply.
+	 * @return The column of the coefficient.
+	 */
+	public int column(int k) {
+		return appliedCols[k];
+	}
+
+	/**
+	 * @param k
+	 *            A change taken by the last apply.
+	 * @return The variation of the cost of any solution containing both the
+	 *         row and the column, with the sign of the cache.
+	 */
+	public double variation(int k) {
+		return variations[k];
+	}
+
+}
@@ -0,0 +1,238 @@
+package problems.qbf;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Exact pruned search of the exchange (swap) neighborhood of a QBF. The cost
+ * variation of exchanging an element in for an element out is
+ * delta(in) + delta(out) - Q[in][out], so it is bounded below by
+ * delta(in) + delta(out) - maxCoupling(in). Enumerating both sides sorted by
+ * their one-flip cost variations, the search stops as soon as the bound can
+ * no longer beat the best exchange found, and still returns the same move as
+ * the full scan (ties are broken by the scan order of the candidates). It
+ * considers a minimization problem.
+ */
+public class ExchangeSearch {
+
+	/**
+	 * the one-flip cost variations of the incumbent solution.
+	 */
+	private final QBFDeltaCache cache;
+
+	/**
+	 * the largest coupling of each variable with any other variable.
+	 */
+	private final double[] maxCoupling;
+
+	/**
+	 * the largest coupling between any two variables.
+	 */
+	private double globalMaxCoupling;
+
+	/**
+	 * the candidates sorted by cost variation, with their scan order ranks.
+	 */
+	private final int[] ins, inRank, outs, outRank;
+
+	private final double[] inKey, outKey;
+
+	private int bestIn, bestOut;
+
+	private double bestDelta;
+
+	/**
+	 * Constructor for the ExchangeSearch class.
+	 *
+	 * @param cache
+	 *            The one-flip cost variations of the incumbent solution.
+	 */
+	public ExchangeSearch(QBFDeltaCache cache) {
+		int n = cache.getDomainSize();
+		this.cache = cache;
+		this.maxCoupling = new double[n];
+		this.ins = new int[n];
+		this.inRank = new int[n];
+		this.inKey = new double[n];
+		this.outs = new int[n];
+		this.outRank = new int[n];
+		this.outKey = new double[n];
+		updateCouplings();
+	}
+
+	/**
+	 * Recomputes the coupling bounds from the coefficients of the cache.
+	 */
+	public void updateCouplings() {
+		int n = cache.getDomainSize();
+		globalMaxCoupling = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			maxCoupling[i] = Double.NEGATIVE_INFINITY;
+			for (int j = 0; j < n; j++)
+				if (j != i && cache.coupling(i, j) > maxCoupling[i])
+					maxCoupling[i] = cache.coupling(i, j);
+			if (maxCoupling[i] > globalMaxCoupling)
+				globalMaxCoupling = maxCoupling[i];
+		}
+	}
+
+	/**
+	 * Follows a change of the coupling between two variables in O(1). The
+	 * bounds only grow: a bound above the largest coupling still prunes
+	 * correctly, if less, until {@link #updateCouplings()} tightens it.
+	 *
+	 * @param i
+	 *            The first variable.
+	 * @param j
+	 *            The second variable.
+	 */
+	public void updateCoupling(int i, int j) {
+		if (i == j)
+			return;
+		double q = cache.coupling(i, j);
+		if (q > maxCoupling[i])
+			maxCoupling[i] = q;
+		if (q > maxCoupling[j])
+			maxCoupling[j] = q;
+		if (q > globalMaxCoupling)
+			globalMaxCoupling = q;
+	}
+
+	/**
+	 * Searches for the best admissible exchange whose cost variation is
+	 * strictly lower than a given bound. An exchange is admissible if neither
+	 * element is tabu, or if its cost variation is lower than the aspiration
+	 * threshold.
+	 *
+	 * @param candIns
+	 *            The elements that may enter the solution, in scan order.
+	 * @param nIns
+	 *            The number of elements in candIns.
+	 * @param candOuts
+	 *            The elements that may leave the solution, in scan order.
+	 * @param nOuts
+	 *            The number of elements in candOuts.
+	 * @param isTabu
+	 *            Tells whether an element is tabu.
+	 * @param aspiration
+	 *            The cost variation below which a tabu exchange is accepted.
+	 * @param bound
+	 *            The cost variation to beat.
+	 * @return true if an exchange was found, in which case it is given by
+	 *         {@link #getBestIn()}, {@link #getBestOut()} and
+	 *         {@link #getBestDelta()}.
+	 */
+	public boolean search(int[] candIns, int nIns, int[] candOuts, int nOuts, IntPredicate isTabu,
+			double aspiration, double bound) {
+
+		if (nIns == 0 || nOuts == 0)
+			return false;
+		for (int k = 0; k < nIns; k++) {
+			ins[k] = candIns[k];
+			inRank[k] = k;
+			inKey[k] = cache.delta(candIns[k]);
+		}
+		for (int k = 0; k < nOuts; k++) {
+			outs[k] = candOuts[k];
+			outRank[k] = k;
+			outKey[k] = cache.delta(candOuts[k]);
+		}
+		sort(inKey, ins, inRank, 0, nIns - 1);
+		sort(outKey, outs, outRank, 0, nOuts - 1);
+
+		boolean found = false;
+		int bestInRank = 0, bestOutRank = 0;
+		bestDelta = bound;
+		for (int a = 0; a < nIns; a++) {
+			if (inKey[a] + outKey[0] - globalMaxCoupling > bestDelta)
+				break;
+			int in = ins[a];
+			boolean inTabu = isTabu.test(in);
+			for (int b = 0; b < nOuts; b++) {
+				if (inKey[a] + outKey[b] - maxCoupling[in] > bestDelta)
+					break;
+				int out = outs[b];
+				double deltaCost = cache.pairDelta(in, out);
+				if (deltaCost > bestDelta)
+					continue;
+				if (deltaCost == bestDelta && (!found || inRank[a] > bestInRank
+						|| (inRank[a] == bestInRank && outRank[b] > bestOutRank)))
+					continue;
+				if ((inTabu || isTabu.test(out)) && !(deltaCost < aspiration))
+					continue;
+				found = true;
+				bestDelta = deltaCost;
+				bestIn = in;
+				bestOut = out;
+				bestInRank = inRank[a];
+				bestOutRank = outRank[b];
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * @return The element entering the solution in the exchange found.
+	 */
+	public int getBestIn() {
+		return bestIn;
+	}
+
+	/**
+	 * @return The element leaving the solution in the exchange found.
+	 */
+	public int getBestOut() {
+		return bestOut;
+	}
+
+	/**
+	 * @return The cost variation of the exchange found.
+	 */
+	public double getBestDelta() {
+		return bestDelta;
+	}
+
+	/**
+	 * Sorts the elements by increasing key and rank.
+	 */
+	private static void sort(double[] key, int[] elem, int[] rank, int lo, int hi) {
+		while (lo < hi) {
+			if (hi - lo < 16) {
+				for (int i = lo + 1; i <= hi; i++)
+					for (int j = i; j > lo && less(key, rank, j, j - 1); j--)
+						swap(key, elem, rank, j, j - 1);
+				return;
+			}
+			swap(key, elem, rank, lo + (hi - lo) / 2, hi);
+			int p = lo;
+			for (int i = lo; i < hi; i++)
+				if (less(key, rank, i, hi))
+					swap(key, elem, rank, i, p++);
+			swap(key, elem, rank, p, hi);
+			if (p - lo < hi - p) {
+				sort(key, elem, rank, lo, p - 1);
+				lo = p + 1;
+			} else {
+				sort(key, elem, rank, p + 1, hi);
+				hi = p - 1;
+			}
+		}
+	}
+
+	private static boolean less(double[] key, int[] rank, int i, int j) {
+		return key[i] < key[j] || (key[i] == key[j] && rank[i] < rank[j]);
+	}
+
+	private static void swap(double[] key, int[] elem, int[] rank, int i, int j) {
+		double k = key[i];
+		key[i] = key[j];
+		key[j] = k;
+		int e = elem[i];
+		elem[i] = elem[j];
+		elem[j] = e;
+		int r = rank[i];
+		rank[i] = rank[j];
+		rank[j] = r;
+	}
+
+}
@@ -0,0 +1,226 @@
+package problems.qbf;
+
+import java.util.Arrays;
+
+import problems.ConflictConstraints;
+
+/**
+ * Exact search over the assignments of a small subset of the variables of a
+ * QBF, the other variables keeping their values in the incumbent solution,
+ * optionally under conflict constraints. The 2^k assignments of k variables
+ * are enumerated in Gray code order, so consecutive assignments differ by a
+ * single flip: the cost variation of the flip is read from the one-flip cost
+ * variations of the subset, which are then updated in O(k), and the state of
+ * the conflicts of the flipped variable in O(degree). It considers a
+ * minimization problem, like the {@link QBFDeltaCache} it starts from, and
+ * does not modify the cache.
+ */
+public class GrayCodeSearch {
+
+	/**
+	 * The largest subset that can be enumerated.
+	 */
+	public static final int MAX_VARIABLES = 30;
+
+	/**
+	 * Tolerance of the comparisons between costs.
+	 */
+	private static final double EPS = 1e-9;
+
+	/**
+	 * the one-flip cost variations of the incumbent solution.
+	 */
+	private final QBFDeltaCache cache;
+
+	/**
+	 * the conflict constraints, or null.
+	 */
+	private final ConflictConstraints conflicts;
+
+	/**
+	 * the position of each variable in the subset, or -1.
+	 */
+	private final int[] local;
+
+	/**
+	 * the conflicts of the subset that can still be completed, as the number
+	 * of their variables in the subset, and the conflicts of each variable of
+	 * the subset.
+	 */
+	private int[] arity = new int[16];
+	private final int[][] varConflicts = new int[MAX_VARIABLES][];
+	private final int[] varDegree = new int[MAX_VARIABLES];
+	private final int[] marked;
+
+	private final double[][] coupling = new double[MAX_VARIABLES][MAX_VARIABLES];
+	private final double[] delta = new double[MAX_VARIABLES];
+	private final double[] sign = new double[MAX_VARIABLES];
+
+	private final int[] vars = new int[MAX_VARIABLES];
+	private int count;
+	private long bestStep;
+	private double bestDelta;
+
+	/**
+	 * Constructor for the GrayCodeSearch class.
+	 *
+	 * @param cache
+	 *            The one-flip cost variations of the incumbent solution.
+	 * @param conflicts
+	 *            The conflict constraints, or null.
+	 */
+	public GrayCodeSearch(QBFDeltaCache cache, ConflictConstraints conflicts) {
+		this.cache = cache;
+		this.conflicts = conflicts;
+		this.local = new int[cache.getDomainSize()];
+		Arrays.fill(local, -1);
+		this.marked = new int[conflicts == null ? 0 : conflicts.getConflictCount()];
+		Arrays.fill(marked, -1);
+		for (int a = 0; a < MAX_VARIABLES; a++)
+			varConflicts[a] = new int[4];
+	}
+
+	/**
+	 * Finds the best assignment of a subset of the variables, the others
+	 * keeping their values in the incumbent solution, which must be feasible.
+	 *
+	 * @param subset
+	 *            The variables of the subset, distinct.
+	 * @param k
+	 *            The number of variables of the subset, at most
+	 *            {@link #MAX_VARIABLES}.
+	 * @return true if an assignment cheaper than the incumbent one was found
+	 *         (see {@link #getBestDelta()} and {@link #getFlips(int[])}).
+	 */
+	public boolean search(int[] subset, int k) {
+
+		if (k > MAX_VARIABLES)
+			throw new IllegalArgumentException("cannot enumerate " + k + " variables");
+		count = k;
+		System.arraycopy(subset, 0, vars, 0, k);
+		boolean[] x = cache.getVariables();
+		for (int a = 0; a < k; a++) {
+			local[vars[a]] = a;
+			delta[a] = cache.delta(vars[a]);
+			sign[a] = x[vars[a]] ? -1.0 : 1.0;
+			for (int b = 0; b < k; b++)
+				coupling[a][b] = a == b ? 0.0 : cache.coupling(vars[a], vars[b]);
+		}
+		int[] ones = collectConflicts(x);
+		int violated = 0;
+
+		double cost = 0.0;
+		bestDelta = 0.0;
+		bestStep = 0;
+		long total = 1L << k;
+		for (long step = 1; step < total; step++) {
+			int a = Long.numberOfTrailingZeros(step);
+			cost += delta[a];
+
+			/* Flip a: the couplings with a change sign for the others */
+			double e = sign[a];
+			double[] Qa = coupling[a];
+			for (int b = 0; b < k; b++)
+				delta[b] += sign[b] * e * Qa[b];
+			delta[a] = -delta[a];
+			sign[a] = -e;
+			for (int p = 0; p < varDegree[a]; p++) {
+				int c = varConflicts[a][p];
+				if (ones[c] == arity[c])
+					violated--;
+				ones[c] += e > 0 ? 1 : -1;
+				if (ones[c] == arity[c])
+					violated++;
+			}
+
+			if (violated == 0 && cost < bestDelta - EPS) {
+				bestDelta = cost;
+				bestStep = step;
+			}
+		}
+
+		for (int a = 0; a < k; a++)
+			local[vars[a]] = -1;
+		return bestStep != 0;
+	}
+
+	/**
+	 * Gathers the conflicts of the subset whose variables outside the subset
+	 * are all set, numbered from zero, with the variables of the subset that
+	 * belong to each one.
+	 *
+	 * @return The number of variables of the subset set in each conflict.
+	 */
+	private int[] collectConflicts(boolean[] x) {
+		int m = 0;
+		for (int a = 0; a < count; a++)
+			varDegree[a] = 0;
+		if (conflicts == null)
+			return new int[0];
+		int[] ones = new int[arity.length];
+		int[] ids = new int[arity.length];
+		for (int a = 0; a < count; a++) {
+			int i = vars[a];
+			for (int q = 0; q < conflicts.degree(i); q++) {
+				int c = conflicts.conflict(i, q);
+				if (marked[c] < 0) {
+					boolean active = true;
+					int inside = 0, set = 0;
+					for (int p = 0; p < conflicts.arity(c) && active; p++) {
+						int v = conflicts.variable(c, p);
+						if (local[v] >= 0) {
+							inside++;
+							if (x[v])
+								set++;
+						} else {
+							active = x[v];
+						}
+					}
+					if (!active)
+						continue;
+					if (m == arity.length) {
+						arity = Arrays.copyOf(arity, 2 * m);
+						ones = Arrays.copyOf(ones, 2 * m);
+						ids = Arrays.copyOf(ids, 2 * m);
+					}
+					arity[m] = inside;
+					ones[m] = set;
+					ids[m] = c;
+					marked[c] = m++;
+				}
+				if (varDegree[a] == varConflicts[a].length)
+					varConflicts[a] = Arrays.copyOf(varConflicts[a], 2 * varDegree[a]);
+				varConflicts[a][varDegree[a]++] = marked[c];
+			}
+		}
+		for (int c = 0; c < m; c++)
+			marked[ids[c]] = -1;
+		return ones;
+	}
+
+	/**
+	 * @return The cost variation of the best assignment found by the last
+	 *         search, negative if it improves the incumbent solution.
+	 */
+	public double getBestDelta() {
+		return bestDelta;
+	}
+
+	/**
+	 * Gives the variables to flip to go from the incumbent solution to the
+	 * best assignment found by the last search.
+	 *
+	 * @param out
+	 *            The array receiving the variables.
+	 * @return The number of variables.
+	 */
+	public int getFlips(int[] out) {
+		long gray = bestStep ^ (bestStep >>> 1);
+		int n = 0;
+		for (int a = 0; a < count; a++)
+			if ((gray >>> a & 1) != 0)
+				out[n++] = vars[a];
+		return n;
+	}
+
+}
@@ -0,0 +1,114 @@
+package problems.qbf;
+
+import java.util.function.IntPredicate;
+
+import metaheuristics.tabusearch.ElitePool;
+
+/**
+ * Path relinking between two elite solutions of a QBF. Starting from the
+ * initiating solution, the walk flips at each step the variable, among those
+ * in which the current solution still differs from the guiding solution,
+ * with the best one-flip cost variation given by a {@link QBFDeltaCache}. The
+ * best solution strictly between both ends of the path is the result of the
+ * relinking. It considers a minimization problem.
+ */
+public class PathRelinking {
+
+	/**
+	 * the one-flip evaluation of the QBF used by the walk.
+	 */
+	private final QBFDeltaCache cache;
+
+	/**
+	 * tells whether an element can be inserted into the current solution of
+	 * the cache, or null if every insertion is feasible.
+	 */
+	private final IntPredicate canInsert;
+
+	/**
+	 * the variables still to be flipped.
+	 */
+	private final int[] diff;
+
+	/**
+	 * the variables flipped by the walk, in order.
+	 */
+	private final int[] path;
+
+	/**
+	 * Constructor for the PathRelinking class.
+	 *
+	 * @param cache
+	 *            The one-flip evaluation of the QBF, owned by the relinking
+	 *            while it runs.
+	 * @param canInsert
+	 *            Feasibility test for insertions, or null for an unconstrained
+	 *            QBF.
+	 */
+	public PathRelinking(QBFDeltaCache cache, IntPredicate canInsert) {
+		this.cache = cache;
+		this.canInsert = canInsert;
+		this.diff = new int[cache.getDomainSize()];
+		this.path = new int[cache.getDomainSize()];
+	}
+
+	/**
+	 * Walks from the initiating solution towards the guiding solution. When it
+	 * returns, the cache holds the best intermediate solution of the path (or
+	 * the initiating solution if the path has no intermediate solution).
+	 *
+	 * @param from
+	 *            The initiating solution.
+	 * @param to
+	 *            The guiding solution.
+	 * @return The cost of the best intermediate solution, or
+	 *         {@link Double#POSITIVE_INFINITY} if there is none.
+	 */
+	public double relink(ElitePool.Entry from, ElitePool.Entry to) {
+
+		cache.clear();
+		for (int i : from.elements())
+			cache.flip(i);
+
+		int m = 0;
+		for (int i = 0; i < cache.getDomainSize(); i++) {
+			if (from.contains(i) != to.contains(i))
+				diff[m++] = i;
+		}
+
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestStep = 0, steps = 0;
+		int remaining = m;
+		while (remaining > 0) {
+			int bestPos = -1;
+			double minDelta = Double.POSITIVE_INFINITY;
+			for (int p = 0; p < remaining; p++) {
+				int v = diff[p];
+				if (!cache.contains(v) && canInsert != null && !canInsert.test(v))
+					continue;
+				if (cache.delta(v) < minDelta) {
+					minDelta = cache.delta(v);
+					bestPos = p;
+				}
+			}
+			if (bestPos < 0)
+				break;
+
+			int v = diff[bestPos];
+			diff[bestPos] = diff[--remaining];
+			cache.flip(v);
+			path[steps++] = v;
+			if (steps < m && cache.getCost() < bestCost) {
+				bestCost = cache.getCost();
+				bestStep = steps;
+			}
+		}
+
+		/* Undo the flips made after the best intermediate solution */
+		while (steps > bestStep)
+			cache.flip(path[--steps]);
+
+		return bestCost;
+	}
+
+}
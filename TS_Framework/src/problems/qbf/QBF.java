@@ -5,9 +5,10 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StreamTokenizer;
-import java.util.ArrayList;
 import java.util.Arrays;
-import problems.Evaluator;
+import problems.IntEvaluator;
+import solutions.IntSet;
+import solutions.IntSolution;
 import solutions.Solution;
 
 /**
@@ -24,7 +25,7 @@ import solutions.Solution;
  * @author ccavellucci, fusberti
  *
  */
-public class QBF extends Evaluator<Integer> {
+public class QBF extends IntEvaluator {
 
 	/**
 	 * Dimension of the domain.
@@ -34,12 +35,12 @@ public class QBF extends Evaluator<Integer> {
 	/**
 	 * The array of numbers representing the domain.
 	 */
-	public final Double[] variables;
+	public final double[] variables;
 
 	/**
 	 * The matrix A of coefficients for the QBF f(x) = x'.A.x
 	 */
-	public Double[][] A;
+	public double[][] A;
 
 	/**
 	 * The constructor for QuadracticBinaryFunction class. The filename of the
@@ -56,6 +57,19 @@ public class QBF extends Evaluator<Integer> {
 		variables = allocateVariables();
 	}
 
+	/**
+	 * Constructor for the QBF class over a matrix already in memory, such as
+	 * a reduced instance (see {@link QBFReduction}).
+	 * 
+	 * @param A
+	 *            The matrix of coefficients, which is not copied.
+	 */
+	public QBF(double[][] A) {
+		this.A = A;
+		size = A.length;
+		variables = allocateVariables();
+	}
+
 	/**
 	 * Evaluates the value of a solution by transforming it into a vector. This
 	 * is required to perform the matrix multiplication which defines a QBF.
@@ -107,18 +121,19 @@ public class QBF extends Evaluator<Integer> {
 	 * 
 	 * @return The value of the QBF.
 	 */
-	public Double evaluateQBF() {
+	public double evaluateQBF() {
 
-		Double aux = (double) 0, sum = (double) 0;
-		Double vecAux[] = new Double[size];
+		double aux = 0.0, sum = 0.0;
 
 		for (int i = 0; i < size; i++) {
+			if (variables[i] == 0)
+				continue;
+			double[] Ai = A[i];
 			for (int j = 0; j < size; j++) {
-				aux += variables[j] * A[i][j];
+				aux += variables[j] * Ai[j];
 			}
-			vecAux[i] = aux;
-			sum += aux * variables[i];
-			aux = (double) 0;
+			sum += aux;
+			aux = 0.0;
 		}
 
 		return sum;
@@ -148,7 +163,7 @@ public class QBF extends Evaluator<Integer> {
 	 * @return Ihe variation of the objective function resulting from the
 	 *         insertion.
 	 */
-	public Double evaluateInsertionQBF(int i) {
+	public double evaluateInsertionQBF(int i) {
 
 		if (variables[i] == 1)
 			return 0.0;
@@ -179,7 +194,7 @@ public class QBF extends Evaluator<Integer> {
 	 * @return The variation of the objective function resulting from the
 	 *         removal.
 	 */
-	public Double evaluateRemovalQBF(int i) {
+	public double evaluateRemovalQBF(int i) {
 
 		if (variables[i] == 0)
 			return 0.0;
@@ -215,16 +230,16 @@ public class QBF extends Evaluator<Integer> {
 	 * @return The variation of the objective function resulting from the
 	 *         exchange.
 	 */
-	public Double evaluateExchangeQBF(int in, int out) {
+	public double evaluateExchangeQBF(int in, int out) {
 
-		Double sum = 0.0;
+		double sum = 0.0;
 
 		if (in == out)
 			return 0.0;
 		if (variables[in] == 1)
-			return evaluateRemovalQBF(out);
+			return variables[out] == 0 ? 0.0 : -evaluateContributionQBF(out);
 		if (variables[out] == 0)
-			return evaluateInsertionQBF(in);
+			return evaluateContributionQBF(in);
 
 		sum += evaluateContributionQBF(in);
 		sum -= evaluateContributionQBF(out);
@@ -247,9 +262,9 @@ public class QBF extends Evaluator<Integer> {
 	 * @return the variation of the objective function resulting from the
 	 *         insertion.
 	 */
-	private Double evaluateContributionQBF(int i) {
+	private double evaluateContributionQBF(int i) {
 
-		Double sum = 0.0;
+		double sum = 0.0;
 
 		for (int j = 0; j < size; j++) {
 			if (i != j)
@@ -260,6 +275,88 @@ public class QBF extends Evaluator<Integer> {
 		return sum;
 	}
 
+	/**
+	 * Evaluates the value of a solution by transforming it into a vector.
+	 * 
+	 * @param sol
+	 *            the solution which will be evaluated.
+	 */
+	public void setVariables(IntSet sol) {
+
+		resetVariables();
+		for (int k = 0; k < sol.size(); k++)
+			variables[sol.get(k)] = 1.0;
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see problems.IntEvaluator#evaluate(solutions.IntSolution)
+	 */
+	@Override
+	public double evaluate(IntSolution sol) {
+
+		setVariables(sol);
+		return sol.cost = evaluateQBF();
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see problems.IntEvaluator#evaluateInsertionCost(int,
+	 * solutions.IntSolution)
+	 */
+	@Override
+	public double evaluateInsertionCost(int elem, IntSolution sol) {
+
+		setVariables(sol);
+		return evaluateInsertionQBF(elem);
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see problems.IntEvaluator#evaluateRemovalCost(int,
+	 * solutions.IntSolution)
+	 */
+	@Override
+	public double evaluateRemovalCost(int elem, IntSolution sol) {
+
+		setVariables(sol);
+		return evaluateRemovalQBF(elem);
+
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see problems.IntEvaluator#evaluateExchangeCost(int, int,
+	 * solutions.IntSolution)
+	 */
+	@Override
+	public double evaluateExchangeCost(int elemIn, int elemOut, IntSolution sol) {
+
+		setVariables(sol);
+		return evaluateExchangeQBF(elemIn, elemOut);
+
+	}
+
+	/**
+	 * {@inheritDoc} The solution is converted into the vector of variables
+	 * only once for the whole batch.
+	 */
+	@Override
+	public void evaluateInsertionCosts(int[] cands, int count, IntSolution sol, double[] out) {
+
+		setVariables(sol);
+		for (int k = 0; k < count; k++)
+			out[k] = evaluateInsertionQBF(cands[k]);
+
+	}
+
 	/**
 	 * Responsible for setting the QBF function parameters by reading the
 	 * necessary input from an external file. this method reads the domain's
@@ -279,7 +376,7 @@ public class QBF extends Evaluator<Integer> {
 
 		stok.nextToken();
 		Integer _size = (int) stok.nval;
-		A = new Double[_size][_size];
+		A = new double[_size][_size];
 
 		for (int i = 0; i < _size; i++) {
 			for (int j = i; j < _size; j++) {
@@ -301,8 +398,8 @@ public class QBF extends Evaluator<Integer> {
 	 * 
 	 * @return a pointer to the array of domain variables.
 	 */
-	protected Double[] allocateVariables() {
-		Double[] _variables = new Double[size];
+	protected double[] allocateVariables() {
+		double[] _variables = new double[size];
 		return _variables;
 	}
 
@@ -379,10 +476,4 @@ public class QBF extends Evaluator<Integer> {
 
 	}
 
-	@Override
-	public ArrayList<Integer> GetCL(ArrayList<Integer> incumbentSol) {
-		// TODO Auto-generated method stub
-		return null;
-	}
-
 }
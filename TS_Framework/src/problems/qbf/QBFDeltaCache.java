@@ -0,0 +1,302 @@
+package problems.qbf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import solutions.IntSet;
+
+/**
+ * Incremental one-flip evaluation of a QBF. For a binary vector x it keeps
+ * the cost variation of flipping each variable, so that the insertion or
+ * removal of an element is evaluated in O(1) and a flip is applied in O(n),
+ * instead of the O(n) evaluation (plus the O(n) solution to vector
+ * conversion) of {@link QBF#evaluateInsertionCost}.
+ *
+ * The coefficients are kept in the symmetric form Q[i][j] = A[i][j] + A[j][i]
+ * (i != j), Q[i][i] = A[i][i], multiplied by a sign that allows the cache to
+ * follow an inverse QBF ({@link QBF_Inverse}).
+ */
+public class QBFDeltaCache {
+
+	/**
+	 * Dimension of the domain.
+	 */
+	private final int size;
+
+	/**
+	 * The symmetric matrix of coefficients, already multiplied by the sign.
+	 */
+	private final double[][] Q;
+
+	/**
+	 * For each variable, the other variables it has been coupled with. A
+	 * coupling that drops to zero is kept in the list.
+	 */
+	private final int[][] neighbors;
+
+	/**
+	 * Whether variable j is listed among the neighbors of variable i.
+	 */
+	private final boolean[][] coupled;
+
+	/**
+	 * The binary vector x the cache refers to.
+	 */
+	private final boolean[] x;
+
+	/**
+	 * The cost variation of flipping each variable of x.
+	 */
+	private final double[] delta;
+
+	/**
+	 * The cost of x.
+	 */
+	private double cost;
+
+	/**
+	 * 1.0 or -1.0, the sign of the function followed.
+	 */
+	private final double sign;
+
+	/**
+	 * Constructor for the QBFDeltaCache class. The cache starts at the empty
+	 * solution.
+	 *
+	 * @param A
+	 *            The matrix of coefficients of the QBF.
+	 * @param sign
+	 *            1.0 to follow f(x) = x'.A.x, -1.0 to follow -f(x).
+	 */
+	public QBFDeltaCache(double[][] A, double sign) {
+		size = A.length;
+		this.sign = sign;
+		Q = new double[size][size];
+		for (int i = 0; i < size; i++) {
+			Q[i][i] = sign * A[i][i];
+			for (int j = i + 1; j < size; j++) {
+				Q[i][j] = Q[j][i] = sign * (A[i][j] + A[j][i]);
+			}
+		}
+		neighbors = new int[size][];
+		coupled = new boolean[size][size];
+		int[] buffer = new int[size];
+		for (int i = 0; i < size; i++) {
+			int k = 0;
+			for (int j = 0; j < size; j++)
+				if (j != i && Q[i][j] != 0) {
+					coupled[i][j] = true;
+					buffer[k++] = j;
+				}
+			neighbors[i] = Arrays.copyOf(buffer, k);
+		}
+		x = new boolean[size];
+		delta = new double[size];
+		clear();
+	}
+
+	/**
+	 * Moves the cache to the empty solution.
+	 */
+	public void clear() {
+		Arrays.fill(x, false);
+		for (int i = 0; i < size; i++)
+			delta[i] = Q[i][i];
+		cost = 0.0;
+	}
+
+	/**
+	 * Moves the cache to the given solution.
+	 *
+	 * @param sol
+	 *            The elements of the solution.
+	 */
+	public void reset(IntSet sol) {
+		clear();
+		for (int k = 0; k < sol.size(); k++)
+			flip(sol.get(k));
+	}
+
+	/**
+	 * Flips variable i, updating the cost and the cost variation of the
+	 * variables coupled with it, which costs O(n) on a dense QBF and less on a
+	 * sparse one.
+	 *
+	 * @param i
+	 *            The variable being flipped.
+	 */
+	public void flip(int i) {
+		double di = delta[i];
+		cost += di;
+		double[] Qi = Q[i];
+		double e = x[i] ? -1.0 : 1.0;
+		for (int j : neighbors[i]) {
+			if (x[j])
+				delta[j] -= e * Qi[j];
+			else
+				delta[j] += e * Qi[j];
+		}
+		x[i] = !x[i];
+		delta[i] = -di;
+	}
+
+	/**
+	 * Follows a change of a coefficient of the QBF, updating the couplings,
+	 * the cost and the cost variations of i and j in O(1), plus the O(degree)
+	 * insertion of a new coupling among the neighbors.
+	 *
+	 * @param i
+	 *            The row of the coefficient.
+	 * @param j
+	 *            The column of the coefficient.
+	 * @param change
+	 *            The variation of A[i][j].
+	 * @return The variation of the cost of any solution containing both i
+	 *         and j, with the sign of the cache.
+	 */
+	public double update(int i, int j, double change) {
+		double q = sign * change;
+		if (i == j) {
+			Q[i][i] += q;
+			if (x[i])
+				cost += q;
+			delta[i] += x[i] ? -q : q;
+			return q;
+		}
+		if (!coupled[i][j] && q != 0) {
+			coupled[i][j] = coupled[j][i] = true;
+			neighbors[i] = Arrays.copyOf(neighbors[i], neighbors[i].length + 1);
+			neighbors[i][neighbors[i].length - 1] = j;
+			neighbors[j] = Arrays.copyOf(neighbors[j], neighbors[j].length + 1);
+			neighbors[j][neighbors[j].length - 1] = i;
+		}
+		Q[i][j] += q;
+		Q[j][i] = Q[i][j];
+		if (x[i] && x[j])
+			cost += q;
+		if (x[j])
+			delta[i] += x[i] ? -q : q;
+		if (x[i])
+			delta[j] += x[j] ? -q : q;
+		return q;
+	}
+
+	/**
+	 * Gives the variables whose cost variation changes when variable i is
+	 * flipped (besides i itself), possibly with some whose coupling has dropped
+	 * to zero. The array is owned by the cache and must not be modified.
+	 *
+	 * @param i
+	 *            A variable.
+	 * @return The variables coupled with i.
+	 */
+	public int[] getNeighbors(int i) {
+		return neighbors[i];
+	}
+
+	/**
+	 * @param i
+	 *            A variable.
+	 * @return The cost variation of flipping variable i.
+	 */
+	public double delta(int i) {
+		return delta[i];
+	}
+
+	/**
+	 * Cost variation of flipping two distinct variables together, e.g. an
+	 * exchange (one in, one out) or a double insertion.
+	 *
+	 * @param i
+	 *            The first variable.
+	 * @param j
+	 *            The second variable.
+	 * @return The cost variation of flipping both i and j.
+	 */
+	public double pairDelta(int i, int j) {
+		if (x[i] == x[j])
+			return delta[i] + delta[j] + Q[i][j];
+		return delta[i] + delta[j] - Q[i][j];
+	}
+
+	/**
+	 * @param i
+	 *            A variable.
+	 * @return true if variable i is set in x.
+	 */
+	public boolean contains(int i) {
+		return x[i];
+	}
+
+	/**
+	 * Gives the binary vector x. The array is owned by the cache and must not
+	 * be modified.
+	 *
+	 * @return The binary vector x.
+	 */
+	public boolean[] getVariables() {
+		return x;
+	}
+
+	/**
+	 * @param i
+	 *            The first variable.
+	 * @param j
+	 *            The second variable.
+	 * @return The symmetric coupling Q[i][j] between two variables.
+	 */
+	public double coupling(int i, int j) {
+		return Q[i][j];
+	}
+
+	/**
+	 * @return The cost of x.
+	 */
+	public double getCost() {
+		return cost;
+	}
+
+	/**
+	 * @return The dimension of the domain.
+	 */
+	public int getDomainSize() {
+		return size;
+	}
+
+	/**
+	 * Writes the binary vector, the cost variations and the cost, so that
+	 * {@link #readState(DataInput)} restores them bit for bit instead of
+	 * recomputing them with a different rounding.
+	 *
+	 * @param out
+	 *            The output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(cost);
+		for (int i = 0; i < size; i++) {
+			out.writeBoolean(x[i]);
+			out.writeDouble(delta[i]);
+		}
+	}
+
+	/**
+	 * Restores the state written by {@link #writeState(DataOutput)}.
+	 *
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void readState(DataInput in) throws IOException {
+		cost = in.readDouble();
+		for (int i = 0; i < size; i++) {
+			x[i] = in.readBoolean();
+			delta[i] = in.readDouble();
+		}
+	}
+
+}
@@ -0,0 +1,367 @@
+package problems.qbf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import problems.ConflictConstraints;
+import solutions.IntSolution;
+
+/**
+ * Reduction of a QBF, optionally under conflict constraints, by fixing the
+ * variables whose value in some optimal solution is known before the search.
+ * Two rules are applied in turn until neither fixes anything else:
+ *
+ * <ul>
+ * <li>dominance: a variable whose contribution can never be positive, whatever
+ * the values of the free variables, is fixed to zero; one whose contribution
+ * can never be negative, and that belongs to no conflict still able to be
+ * completed, is fixed to one;</li>
+ * <li>persistency: the strong persistencies of the roof dual of the QBF over
+ * the free variables (see {@link RoofDuality#getPersistencies()}) are fixed
+ * together, provided none of the variables fixed to one belongs to a conflict
+ * still able to be completed.</li>
+ * </ul>
+ *
+ * The reduced instance is the QBF over the free variables, with the fixed
+ * variables substituted, and the conflicts none of whose variables was fixed
+ * to zero. An optimal solution of the reduced instance, once expanded, is an
+ * optimal solution of the original one.
+ */
+public class QBFReduction {
+
+	/**
+	 * Dimension of the original domain.
+	 */
+	private final int size;
+
+	/**
+	 * The matrix of coefficients of the original QBF.
+	 */
+	private final double[][] A;
+
+	/**
+	 * The conflict constraints of the original QBF, or null.
+	 */
+	private final ConflictConstraints conflicts;
+
+	/**
+	 * The value of each fixed variable, or -1.
+	 */
+	private final int[] value;
+
+	/**
+	 * The original variable of each reduced variable, and the reduced
+	 * variable of each original one, or -1 if it is fixed.
+	 */
+	private final int[] original, reduced;
+
+	/**
+	 * The matrix of coefficients of the reduced QBF, upper triangular.
+	 */
+	private final double[][] B;
+
+	/**
+	 * The value of the fixed variables.
+	 */
+	private final double constant;
+
+	/**
+	 * The conflict constraints of the reduced QBF, or null.
+	 */
+	private final ConflictConstraints reducedConflicts;
+
+	/**
+	 * Constructor for the QBFReduction class, which reduces the instance.
+	 *
+	 * @param A
+	 *            The matrix of coefficients of the QBF.
+	 * @param conflicts
+	 *            The conflict constraints, or null.
+	 */
+	public QBFReduction(double[][] A, ConflictConstraints conflicts) {
+
+		this.A = A;
+		this.size = A.length;
+		this.conflicts = conflicts;
+		this.value = new int[size];
+		Arrays.fill(value, -1);
+
+		while (dominance() || persistency())
+			;
+
+		int m = 0;
+		reduced = new int[size];
+		for (int i = 0; i < size; i++)
+			reduced[i] = value[i] < 0 ? m++ : -1;
+		original = new int[m];
+		for (int i = 0; i < size; i++)
+			if (reduced[i] >= 0)
+				original[reduced[i]] = i;
+		B = substitute();
+
+		double sum = 0.0;
+		for (int i = 0; i < size; i++)
+			if (value[i] == 1)
+				for (int j = 0; j < size; j++)
+					if (value[j] == 1)
+						sum += A[i][j];
+		constant = sum;
+
+		if (conflicts == null) {
+			reducedConflicts = null;
+		} else {
+			List<int[]> list = new ArrayList<int[]>();
+			for (int c = 0; c < conflicts.getConflictCount(); c++) {
+				if (!isActive(c))
+					continue;
+				int[] vars = new int[conflicts.arity(c)];
+				for (int p = 0; p < vars.length; p++)
+					vars[p] = reduced[conflicts.variable(c, p)];
+				list.add(vars);
+			}
+			reducedConflicts = new ConflictConstraints(m, list);
+		}
+	}
+
+	/**
+	 * Applies the dominance rule to every free variable.
+	 *
+	 * @return true if a variable was fixed.
+	 */
+	private boolean dominance() {
+		boolean changed = false;
+		for (int i = 0; i < size; i++) {
+			if (value[i] >= 0)
+				continue;
+			double lin = A[i][i], pos = 0.0, neg = 0.0;
+			for (int j = 0; j < size; j++) {
+				if (j == i || value[j] == 0)
+					continue;
+				double q = A[i][j] + A[j][i];
+				if (value[j] == 1)
+					lin += q;
+				else if (q > 0)
+					pos += q;
+				else
+					neg += q;
+			}
+			if (lin + pos <= 0 || isForbidden(i)) {
+				value[i] = 0;
+				changed = true;
+			} else if (lin + neg >= 0 && !hasActiveConflict(i)) {
+				value[i] = 1;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Applies the persistencies of the roof dual of the QBF over the free
+	 * variables.
+	 *
+	 * @return true if a variable was fixed.
+	 */
+	private boolean persistency() {
+		int[] free = new int[size];
+		int m = 0;
+		for (int i = 0; i < size; i++)
+			if (value[i] < 0)
+				free[m++] = i;
+		if (m == 0)
+			return false;
+
+		int[] persistent = new RoofDuality(substitute(free, m)).getPersistencies();
+
+		int[] saved = value.clone();
+		boolean changed = false;
+		for (int a = 0; a < m; a++) {
+			if (persistent[a] >= 0) {
+				value[free[a]] = persistent[a];
+				changed = true;
+			}
+		}
+		for (int a = 0; a < m && changed; a++) {
+			if (persistent[a] == 1 && hasActiveConflict(free[a])) {
+				System.arraycopy(saved, 0, value, 0, size);
+				changed = false;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return The matrix of coefficients over the free variables, in the order
+	 *         of {@link #original}.
+	 */
+	private double[][] substitute() {
+		return substitute(original, original.length);
+	}
+
+	/**
+	 * @return The upper triangular matrix of coefficients of the QBF over the
+	 *         given free variables, with the fixed variables substituted.
+	 */
+	private double[][] substitute(int[] free, int m) {
+		double[][] S = new double[m][m];
+		for (int a = 0; a < m; a++) {
+			int i = free[a];
+			double lin = A[i][i];
+			for (int j = 0; j < size; j++)
+				if (value[j] == 1)
+					lin += A[i][j] + A[j][i];
+			S[a][a] = lin;
+			for (int b = a + 1; b < m; b++)
+				S[a][b] = A[i][free[b]] + A[free[b]][i];
+		}
+		return S;
+	}
+
+	/**
+	 * @return true if no variable of the conflict is fixed to zero, so it can
+	 *         still be completed.
+	 */
+	private boolean isActive(int c) {
+		for (int p = 0; p < conflicts.arity(c); p++)
+			if (value[conflicts.variable(c, p)] == 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return true if the variable belongs to a conflict that can still be
+	 *         completed.
+	 */
+	private boolean hasActiveConflict(int i) {
+		if (conflicts == null)
+			return false;
+		for (int k = 0; k < conflicts.degree(i); k++)
+			if (isActive(conflicts.conflict(i, k)))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return true if the variable completes a conflict whose other variables
+	 *         are all fixed to one.
+	 */
+	private boolean isForbidden(int i) {
+		if (conflicts == null)
+			return false;
+		for (int k = 0; k < conflicts.degree(i); k++) {
+			int c = conflicts.conflict(i, k);
+			boolean complete = true;
+			for (int p = 0; p < conflicts.arity(c) && complete; p++) {
+				int v = conflicts.variable(c, p);
+				complete = v == i || value[v] == 1;
+			}
+			if (complete)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return The dimension of the reduced domain.
+	 */
+	public int getDomainSize() {
+		return original.length;
+	}
+
+	/**
+	 * @return The number of variables fixed.
+	 */
+	public int getFixedCount() {
+		return size - original.length;
+	}
+
+	/**
+	 * @return The matrix of coefficients of the reduced QBF, upper triangular.
+	 */
+	public double[][] getA() {
+		return B;
+	}
+
+	/**
+	 * @return The conflict constraints of the reduced QBF, or null if the
+	 *         original QBF has none.
+	 */
+	public ConflictConstraints getConflicts() {
+		return reducedConflicts;
+	}
+
+	/**
+	 * @return The value of the fixed variables, to be added to the value of
+	 *         a reduced solution.
+	 */
+	public double getConstant() {
+		return constant;
+	}
+
+	/**
+	 * @param k
+	 *            A reduced variable.
+	 * @return The original variable.
+	 */
+	public int original(int k) {
+		return original[k];
+	}
+
+	/**
+	 * @param i
+	 *            An original variable.
+	 * @return The reduced variable, or -1 if it is fixed.
+	 */
+	public int reduced(int i) {
+		return reduced[i];
+	}
+
+	/**
+	 * @param i
+	 *            An original variable.
+	 * @return The value of the variable, or -1 if it is free.
+	 */
+	public int fixedValue(int i) {
+		return value[i];
+	}
+
+	/**
+	 * Maps a solution of the reduced instance back to the original one.
+	 *
+	 * @param sol
+	 *            A solution of the reduced instance, with the cost of an
+	 *            inverse QBF (minus its value).
+	 * @return The solution of the original instance, with its cost.
+	 */
+	public IntSolution expand(IntSolution sol) {
+		IntSolution expanded = new IntSolution(size);
+		for (int i = 0; i < size; i++)
+			if (value[i] == 1)
+				expanded.add(i);
+		for (int k = 0; k < sol.size(); k++)
+			expanded.add(original[sol.get(k)]);
+		expanded.cost = sol.cost - constant;
+		return expanded;
+	}
+
+	/**
+	 * Maps a solution of the original instance to the reduced one, dropping
+	 * the fixed variables.
+	 *
+	 * @param sol
+	 *            A solution of the original instance, with the cost of an
+	 *            inverse QBF.
+	 * @return The solution of the reduced instance; its cost is right if the
+	 *         solution agrees with the fixed variables.
+	 */
+	public IntSolution reduce(IntSolution sol) {
+		IntSolution r = new IntSolution(original.length);
+		for (int k = 0; k < sol.size(); k++)
+			if (reduced[sol.get(k)] >= 0)
+				r.add(reduced[sol.get(k)]);
+		r.cost = sol.cost + constant;
+		return r;
+	}
+
+}
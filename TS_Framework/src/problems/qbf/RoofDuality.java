@@ -0,0 +1,264 @@
+package problems.qbf;
+
+import java.util.Arrays;
+
+/**
+ * Roof duality bound of a QBF (Hammer, Hansen and Simeone, 1984), computed as
+ * a maximum flow in the implication network of Boros, Hammer and Tavares
+ * (2006). The maximization of f(x) = x'.A.x is written as the minimization of
+ * -f(x), which is turned into a posiform: a constant plus nonnegative
+ * multiples of literals and of products of two literals. The roof dual lower
+ * bound of -f is that constant plus the value of a maximum flow in a network
+ * with one node per literal, in which every term of the posiform becomes a
+ * pair of arcs. The bound equals the one of the standard linearization of
+ * the QBF, and is a valid upper bound on the maximum of f, with or without
+ * side constraints such as the prohibited triples of a QBFPT.
+ *
+ * When every coefficient of A is an integer, so is the optimum, and the
+ * bound is rounded down.
+ */
+public class RoofDuality {
+
+	/**
+	 * Tolerance of the residual capacities.
+	 */
+	private static final double EPS = 1e-9;
+
+	/**
+	 * Dimension of the domain.
+	 */
+	private final int size;
+
+	/**
+	 * The literal x_i is node 2i and its complement is node 2i+1; the source
+	 * (the constant 1) and the sink (the constant 0) are the last two nodes.
+	 */
+	private final int source, sink;
+
+	/**
+	 * The arcs of the network, in adjacency lists, each one followed by its
+	 * reverse arc.
+	 */
+	private int[] head, next, to;
+
+	/**
+	 * The residual capacity of each arc.
+	 */
+	private double[] cap;
+
+	/**
+	 * The capacity of each arc. Every term of the posiform adds four arcs:
+	 * 4k and 4k+2 are mirrors of each other, and 4k+1 and 4k+3 their
+	 * reverse arcs.
+	 */
+	private double[] original;
+
+	/**
+	 * The number of arcs.
+	 */
+	private int arcs = 0;
+
+	/**
+	 * The constant of the posiform.
+	 */
+	private double constant = 0.0;
+
+	/**
+	 * The value of the maximum flow, with the capacities doubled.
+	 */
+	private double flow = 0.0;
+
+	/**
+	 * Whether every coefficient of A is an integer.
+	 */
+	private final boolean integral;
+
+	private int[] level, iter, queue;
+
+	/**
+	 * Constructor for the RoofDuality class, which computes the bound.
+	 *
+	 * @param A
+	 *            The matrix of coefficients of the QBF.
+	 */
+	public RoofDuality(double[][] A) {
+
+		size = A.length;
+		source = 2 * size;
+		sink = 2 * size + 1;
+		head = new int[2 * size + 2];
+		Arrays.fill(head, -1);
+		int capacity = 16;
+		next = new int[capacity];
+		to = new int[capacity];
+		cap = new double[capacity];
+		original = new double[capacity];
+
+		/* Posiform of -f: the coefficients of the minimization */
+		boolean isIntegral = true;
+		double[] linear = new double[size];
+		for (int i = 0; i < size; i++) {
+			linear[i] -= A[i][i];
+			isIntegral &= A[i][i] == Math.rint(A[i][i]);
+			for (int j = i + 1; j < size; j++) {
+				double q = -(A[i][j] + A[j][i]);
+				isIntegral &= A[i][j] == Math.rint(A[i][j]) && A[j][i] == Math.rint(A[j][i]);
+				if (q > 0) {
+					addTerm(2 * i, 2 * j, q);
+				} else if (q < 0) {
+					/* q.xi.xj = q.xi - q.xi.(1 - xj) */
+					linear[i] += q;
+					addTerm(2 * i, 2 * j + 1, -q);
+				}
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (linear[i] > 0) {
+				addTerm(2 * i, source, linear[i]);
+			} else if (linear[i] < 0) {
+				/* c.xi = c - c.(1 - xi) */
+				constant += linear[i];
+				addTerm(2 * i + 1, source, -linear[i]);
+			}
+		}
+		integral = isIntegral;
+
+		level = new int[2 * size + 2];
+		iter = new int[2 * size + 2];
+		queue = new int[2 * size + 2];
+		while (bfs()) {
+			System.arraycopy(head, 0, iter, 0, head.length);
+			double f;
+			while ((f = dfs(source, Double.POSITIVE_INFINITY)) > EPS)
+				flow += f;
+		}
+	}
+
+	/**
+	 * @return An upper bound on the maximum of the QBF.
+	 */
+	public double getUpperBound() {
+		double lower = constant + flow / 2;
+		return integral ? -Math.ceil(lower - EPS) : -lower;
+	}
+
+	/**
+	 * Strong persistencies of the QBF (Boros, Hammer and Tavares, 2006): the
+	 * literals reachable from the source in the residual network of a
+	 * symmetric maximum flow take the value one in every maximum of the QBF
+	 * without side constraints. The flow found is symmetrized by averaging
+	 * each arc with its mirror arc.
+	 *
+	 * @return For each variable, its value in every maximum of the QBF, or -1
+	 *         if it is not persistent.
+	 */
+	public int[] getPersistencies() {
+
+		/* Residual capacities of the symmetrized flow */
+		double[] residual = new double[arcs];
+		for (int e = 0; e < arcs; e += 4) {
+			double f = ((original[e] - cap[e]) + (original[e + 2] - cap[e + 2])) / 2;
+			residual[e] = residual[e + 2] = original[e] - f;
+			residual[e + 1] = residual[e + 3] = f;
+		}
+
+		boolean[] reached = new boolean[2 * size + 2];
+		int qh = 0, qt = 0;
+		reached[source] = true;
+		queue[qt++] = source;
+		while (qh < qt) {
+			int u = queue[qh++];
+			for (int e = head[u]; e >= 0; e = next[e]) {
+				if (residual[e] > EPS && !reached[to[e]]) {
+					reached[to[e]] = true;
+					queue[qt++] = to[e];
+				}
+			}
+		}
+
+		int[] persistent = new int[size];
+		for (int i = 0; i < size; i++)
+			persistent[i] = reached[2 * i] ? 1 : reached[2 * i + 1] ? 0 : -1;
+		return persistent;
+	}
+
+	/**
+	 * @return The dimension of the domain.
+	 */
+	public int getDomainSize() {
+		return size;
+	}
+
+	/**
+	 * The term a.u.v of the posiform becomes the arcs u -> not v and
+	 * v -> not u, with capacity a (twice the capacity of the original
+	 * network, to keep integer capacities integer). A linear term is a
+	 * product with the source.
+	 */
+	private void addTerm(int u, int v, double a) {
+		addArc(u, v ^ 1, a);
+		addArc(v, u ^ 1, a);
+	}
+
+	private void addArc(int u, int v, double c) {
+		if (arcs + 2 > to.length) {
+			int capacity = 2 * to.length;
+			next = Arrays.copyOf(next, capacity);
+			to = Arrays.copyOf(to, capacity);
+			cap = Arrays.copyOf(cap, capacity);
+			original = Arrays.copyOf(original, capacity);
+		}
+		to[arcs] = v;
+		cap[arcs] = original[arcs] = c;
+		next[arcs] = head[u];
+		head[u] = arcs++;
+		to[arcs] = u;
+		cap[arcs] = 0.0;
+		next[arcs] = head[v];
+		head[v] = arcs++;
+	}
+
+	/**
+	 * Builds the level graph of the residual network.
+	 *
+	 * @return true if the sink is reachable.
+	 */
+	private boolean bfs() {
+		Arrays.fill(level, -1);
+		int qh = 0, qt = 0;
+		level[source] = 0;
+		queue[qt++] = source;
+		while (qh < qt) {
+			int u = queue[qh++];
+			for (int e = head[u]; e >= 0; e = next[e]) {
+				if (cap[e] > EPS && level[to[e]] < 0) {
+					level[to[e]] = level[u] + 1;
+					queue[qt++] = to[e];
+				}
+			}
+		}
+		return level[sink] >= 0;
+	}
+
+	/**
+	 * Pushes flow along a path of the level graph.
+	 */
+	private double dfs(int u, double f) {
+		if (u == sink)
+			return f;
+		for (; iter[u] >= 0; iter[u] = next[iter[u]]) {
+			int e = iter[u];
+			int v = to[e];
+			if (cap[e] > EPS && level[v] == level[u] + 1) {
+				double d = dfs(v, Math.min(f, cap[e]));
+				if (d > EPS) {
+					cap[e] -= d;
+					cap[e ^ 1] += d;
+					return d;
+				}
+			}
+		}
+		return 0.0;
+	}
+
+}
@@ -1,12 +1,23 @@
 package problems.qbf.solvers;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.function.IntPredicate;
 
-import metaheuristics.tabusearch.AbstractTS;
+import metaheuristics.tabusearch.AbstractIntTS;
+import metaheuristics.tabusearch.IndexedMinHeap;
+import metaheuristics.tabusearch.IntTabuList;
+import metaheuristics.tabusearch.ReactiveTenure;
+import metaheuristics.tabusearch.ZobristHash;
+import problems.qbf.BranchAndBound;
+import problems.qbf.CoefficientUpdates;
+import problems.qbf.ExchangeSearch;
+import problems.qbf.QBFDeltaCache;
 import problems.qbf.QBF_Inverse;
-import solutions.Solution;
+import problems.qbf.RoofDuality;
+import solutions.IntSet;
+import solutions.IntSolution;
 
 
 
@@ -18,9 +29,64 @@ import solutions.Solution;
  * 
  * @author ccavellucci, fusberti
  */
-public class TS_QBF extends AbstractTS<Integer> {
-	
-	private final Integer fake = new Integer(-1);
+public class TS_QBF extends AbstractIntTS {
+
+	/**
+	 * the largest instance on which the branch and bound is enabled by
+	 * default.
+	 */
+	public static final int EXACT_SIZE = 50;
+
+	/**
+	 * the one-flip cost variations of the incumbent solution.
+	 */
+	private QBFDeltaCache cache;
+
+	/**
+	 * the non-tabu elements keyed by their flip cost variation.
+	 */
+	private IndexedMinHeap freeHeap;
+
+	/**
+	 * the tabu elements keyed by their flip cost variation.
+	 */
+	private IndexedMinHeap tabuHeap;
+
+	/**
+	 * whether the exchange neighborhood is explored by the exact pruned
+	 * search instead of the full scan.
+	 */
+	private boolean prunedExchange = true;
+
+	/**
+	 * the pruned search of the exchange neighborhood.
+	 */
+	private ExchangeSearch exchangeSearch;
+
+	/**
+	 * tells whether an element is in the Tabu List.
+	 */
+	private final IntPredicate isTabu = e -> TL.contains(e);
+
+	/**
+	 * the Zobrist hash of the incumbent solution.
+	 */
+	private ZobristHash zobrist;
+
+	/**
+	 * the reactive tenure, or null if the tenure is fixed.
+	 */
+	private ReactiveTenure reactive = null;
+
+	/**
+	 * the branch and bound that tightens the lower bound, or null.
+	 */
+	private BranchAndBound branchAndBound = null;
+
+	/**
+	 * the coefficient changes waiting for the next move.
+	 */
+	private final CoefficientUpdates updates = new CoefficientUpdates();
 
 	/**
 	 * Constructor for the TS_QBF class. An inverse QBF objective function is
@@ -36,20 +102,91 @@ public class TS_QBF extends AbstractTS<Integer> {
 	 * @throws IOException
 	 *             necessary for I/O operations.
 	 */
-	public TS_QBF(Integer tenure, Integer iterations, String filename) throws IOException {
-		super(new QBF_Inverse(filename), tenure, iterations);
+	public TS_QBF(int tenure, long iterations, String filename) throws IOException {
+		this(tenure, iterations, new QBF_Inverse(filename));
+	}
+
+	/**
+	 * Constructor for the TS_QBF class over an objective function already
+	 * built, such as the one of a reduced instance (see
+	 * {@link problems.qbf.QBFReduction}).
+	 * 
+	 * @param tenure
+	 *            The Tabu tenure parameter.
+	 * @param iterations
+	 *            The number of iterations which the TS will be executed.
+	 * @param objFunction
+	 *            The inverse QBF objective function, which the solver must not
+	 *            share with another one.
+	 */
+	public TS_QBF(int tenure, long iterations, QBF_Inverse objFunction) {
+		super(objFunction, tenure, iterations);
+		int n = ObjFunction.getDomainSize();
+		cache = new QBFDeltaCache(((QBF_Inverse) ObjFunction).A, -1.0);
+		freeHeap = new IndexedMinHeap(n);
+		tabuHeap = new IndexedMinHeap(n);
+		exchangeSearch = new ExchangeSearch(cache);
+		zobrist = new ZobristHash(n, 0);
+		lowerBound = -new RoofDuality(((QBF_Inverse) ObjFunction).A).getUpperBound();
+		setBranchAndBound(n <= EXACT_SIZE);
+	}
+
+	/**
+	 * Enables or disables the branch and bound that runs alongside the search,
+	 * taking half of its time, to prove the optimality of the best solution.
+	 * It is enabled by default on instances of up to {@link #EXACT_SIZE}
+	 * variables, and turned off by checkpoints. Without it, the lower bound
+	 * is the roof dual bound.
+	 *
+	 * @param enabled
+	 *            true to run the branch and bound.
+	 */
+	public void setBranchAndBound(boolean enabled) {
+		if (enabled) {
+			branchAndBound = new BranchAndBound(((QBF_Inverse) ObjFunction).A, null);
+			branchAndBound.setShare(0.5);
+		} else {
+			branchAndBound = null;
+		}
+	}
+
+	/**
+	 * Makes the tabu tenure reactive: it grows when the search revisits a
+	 * solution, detected through the Zobrist hash of the incumbent solution,
+	 * and shrinks after a long stretch without repetitions.
+	 * 
+	 * @param minTenure
+	 *            The smallest tenure.
+	 * @param maxTenure
+	 *            The largest tenure.
+	 * @param stretch
+	 *            The number of iterations without repetitions after which the
+	 *            tenure shrinks.
+	 */
+	public void setReactiveTenure(int minTenure, int maxTenure, int stretch) {
+		this.reactive = new ReactiveTenure(tenure, minTenure, maxTenure, stretch);
+	}
+
+	/**
+	 * Chooses between the exact pruned search of the exchange neighborhood
+	 * (the default) and the full scan. Both select the same move.
+	 * 
+	 * @param pruned
+	 *            true to use the pruned search.
+	 */
+	public void setPrunedExchange(boolean pruned) {
+		this.prunedExchange = pruned;
 	}
 
 	/* (non-Javadoc)
 	 * @see metaheuristics.tabusearch.AbstractTS#makeCL()
 	 */
 	@Override
-	public ArrayList<Integer> makeCL() {
+	public IntSet makeCL() {
 
-		ArrayList<Integer> _CL = new ArrayList<Integer>();
+		IntSet _CL = new IntSet(ObjFunction.getDomainSize());
 		for (int i = 0; i < ObjFunction.getDomainSize(); i++) {
-			Integer cand = new Integer(i);
-			_CL.add(cand);
+			_CL.add(i);
 		}
 
 		return _CL;
@@ -60,9 +197,9 @@ public class TS_QBF extends AbstractTS<Integer> {
 	 * @see metaheuristics.tabusearch.AbstractTS#makeRCL()
 	 */
 	@Override
-	public ArrayList<Integer> makeRCL() {
+	public IntSet makeRCL() {
 
-		ArrayList<Integer> _RCL = new ArrayList<Integer>();
+		IntSet _RCL = new IntSet(ObjFunction.getDomainSize());
 
 		return _RCL;
 
@@ -72,11 +209,11 @@ public class TS_QBF extends AbstractTS<Integer> {
 	 * @see metaheuristics.tabusearch.AbstractTS#makeTL()
 	 */
 	@Override
-	public ArrayDeque<Integer> makeTL() {
+	public IntTabuList makeTL() {
 
-		ArrayDeque<Integer> _TS = new ArrayDeque<Integer>(2*tenure);
+		IntTabuList _TS = new IntTabuList(ObjFunction.getDomainSize(), 2*tenure);
 		for (int i=0; i<2*tenure; i++) {
-			_TS.add(fake);
+			_TS.add(IntTabuList.FAKE);
 		}
 
 		return _TS;
@@ -101,83 +238,270 @@ public class TS_QBF extends AbstractTS<Integer> {
 	 * to zero has also zero cost.
 	 */
 	@Override
-	public Solution<Integer> createEmptySol() {
-		Solution<Integer> sol = new Solution<Integer>();
+	public IntSolution createEmptySol() {
+		IntSolution sol = new IntSolution(ObjFunction.getDomainSize());
 		sol.cost = 0.0;
 		return sol;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The one-flip cost variations and the move heaps are
+	 * synchronized with the initial solution before the main loop starts.
+	 */
+	@Override
+	protected IntSolution search() {
+		incumbentChanged();
+		return super.search();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The one-flip cost variations are recomputed and, since the Tabu List is
+	 * empty, every element goes to the non-tabu heap.
+	 */
+	@Override
+	protected void incumbentChanged() {
+		cache.reset(incumbentSol);
+		zobrist.reset(incumbentSol);
+		freeHeap.clear();
+		tabuHeap.clear();
+		for (int i = 0; i < cache.getDomainSize(); i++)
+			freeHeap.set(i, cache.delta(i));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
 	 * The local search operator developed for the QBF objective function is
 	 * composed by the neighborhood moves Insertion, Removal and 2-Exchange.
+	 * Insertions and removals are both flips of a variable, so the best of
+	 * them is read from the tops of the non-tabu and tabu heaps instead of
+	 * scanning every candidate.
 	 */
 	@Override
-	public Solution<Integer> neighborhoodMove() {
+	public IntSolution neighborhoodMove() {
 
-		Double minDeltaCost;
-		Integer bestCandIn = null, bestCandOut = null;
+		double minDeltaCost;
+		int bestCandIn = -1, bestCandOut = -1;
 
 		minDeltaCost = Double.POSITIVE_INFINITY;
 		updateCL();
-		// Evaluate insertions
-		for (Integer candIn : CL) {
-			Double deltaCost = ObjFunction.evaluateInsertionCost(candIn, incumbentSol);
-			if (!TL.contains(candIn) || incumbentSol.cost+deltaCost < bestSol.cost) {
-				if (deltaCost < minDeltaCost) {
-					minDeltaCost = deltaCost;
-					bestCandIn = candIn;
-					bestCandOut = null;
-				}
-			}
+		// Evaluate insertions and removals
+		int bestFlip = freeHeap.peek();
+		if (bestFlip >= 0)
+			minDeltaCost = freeHeap.key(bestFlip);
+		int tabuFlip = tabuHeap.peek();
+		if (tabuFlip >= 0 && tabuHeap.key(tabuFlip) < minDeltaCost
+				&& incumbentSol.cost + tabuHeap.key(tabuFlip) < bestSol.cost) {
+			minDeltaCost = tabuHeap.key(tabuFlip);
+			bestFlip = tabuFlip;
 		}
-		// Evaluate removals
-		for (Integer candOut : incumbentSol) {
-			Double deltaCost = ObjFunction.evaluateRemovalCost(candOut, incumbentSol);
-			if (!TL.contains(candOut) || incumbentSol.cost+deltaCost < bestSol.cost) {
-				if (deltaCost < minDeltaCost) {
-					minDeltaCost = deltaCost;
-					bestCandIn = null;
-					bestCandOut = candOut;
-				}
-			}
+		if (bestFlip >= 0) {
+			if (cache.contains(bestFlip))
+				bestCandOut = bestFlip;
+			else
+				bestCandIn = bestFlip;
 		}
 		// Evaluate exchanges
-		for (Integer candIn : CL) {
-			for (Integer candOut : incumbentSol) {
-				Double deltaCost = ObjFunction.evaluateExchangeCost(candIn, candOut, incumbentSol);
-				if ((!TL.contains(candIn) && !TL.contains(candOut)) || incumbentSol.cost+deltaCost < bestSol.cost) {
-					if (deltaCost < minDeltaCost) {
-						minDeltaCost = deltaCost;
-						bestCandIn = candIn;
-						bestCandOut = candOut;
+		if (prunedExchange) {
+			if (exchangeSearch.search(CL.elements(), CL.size(), incumbentSol.elements(), incumbentSol.size(), isTabu,
+					bestSol.cost - incumbentSol.cost, minDeltaCost)) {
+				minDeltaCost = exchangeSearch.getBestDelta();
+				bestCandIn = exchangeSearch.getBestIn();
+				bestCandOut = exchangeSearch.getBestOut();
+			}
+		} else {
+			for (int a = 0; a < CL.size(); a++) {
+				int candIn = CL.get(a);
+				for (int b = 0; b < incumbentSol.size(); b++) {
+					int candOut = incumbentSol.get(b);
+					double deltaCost = cache.pairDelta(candIn, candOut);
+					if ((!TL.contains(candIn) && !TL.contains(candOut)) || incumbentSol.cost+deltaCost < bestSol.cost) {
+						if (deltaCost < minDeltaCost) {
+							minDeltaCost = deltaCost;
+							bestCandIn = candIn;
+							bestCandOut = candOut;
+						}
 					}
 				}
 			}
 		}
 		// Implement the best non-tabu move
-		TL.poll();
-		if (bestCandOut != null) {
+		pollTabu();
+		if (bestCandOut >= 0) {
 			incumbentSol.remove(bestCandOut);
 			CL.add(bestCandOut);
-			TL.add(bestCandOut);
+			flip(bestCandOut);
+			addTabu(bestCandOut);
 		} else {
-			TL.add(fake);
+			addTabu(IntTabuList.FAKE);
 		}
-		TL.poll();
-		if (bestCandIn != null) {
+		pollTabu();
+		if (bestCandIn >= 0) {
 			incumbentSol.add(bestCandIn);
 			CL.remove(bestCandIn);
-			TL.add(bestCandIn);
+			flip(bestCandIn);
+			addTabu(bestCandIn);
 		} else {
-			TL.add(fake);
+			addTabu(IntTabuList.FAKE);
 		}
-		ObjFunction.evaluate(incumbentSol);
+		incumbentSol.cost = cache.getCost();
+		if (reactive != null)
+			adaptTenure(reactive.update(zobrist.get()));
 		
 		return null;
 	}
 
+	/**
+	 * Changes a coefficient of the QBF, possibly while the search runs in
+	 * another thread. The change is applied before the next move of the main
+	 * loop: the matrix of the objective function is patched in place, and the
+	 * cost variations, the move heaps and the costs of the incumbent and best
+	 * solutions follow it in O(1). The lower bound of the former QBF is
+	 * dropped, together with the branch and bound.
+	 * 
+	 * @param i
+	 *            The row of the coefficient.
+	 * @param j
+	 *            The column of the coefficient.
+	 * @param value
+	 *            The new value of A[i][j].
+	 */
+	public void updateCoefficient(int i, int j, double value) {
+		updates.add(i, j, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The cost variations of the rows and columns of the changes move in the
+	 * heaps.
+	 */
+	@Override
+	protected void applyUpdates() {
+		if (!updates.isPending())
+			return;
+		int n = updates.apply(((QBF_Inverse) ObjFunction).A, cache);
+		for (int k = 0; k < n; k++) {
+			int i = updates.row(k), j = updates.column(k);
+			heapOf(i).set(i, cache.delta(i));
+			heapOf(j).set(j, cache.delta(j));
+			exchangeSearch.updateCoupling(i, j);
+			if (bestSol.contains(i) && bestSol.contains(j))
+				bestSol.cost += updates.variation(k);
+		}
+		incumbentSol.cost = cache.getCost();
+		lowerBound = Double.NEGATIVE_INFINITY;
+		branchAndBound = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * A slice of the branch and bound is explored with the value of the best
+	 * solution; a better solution found by it becomes the incumbent.
+	 */
+	@Override
+	protected void improveBound() {
+		if (branchAndBound == null || branchAndBound.isFinished())
+			return;
+		if (branchAndBound.improve(-bestSol.cost)) {
+			IntSolution leaf = new IntSolution(branchAndBound.getBestLeaf());
+			leaf.cost = -leaf.cost;
+			moveTo(leaf);
+		}
+		lowerBound = Math.max(lowerBound, -branchAndBound.getUpperBound());
+	}
+
+	/**
+	 * Changes the tabu tenure, resizing the Tabu List: the oldest entries are
+	 * dropped when it shrinks and fake entries are prepended when it grows.
+	 */
+	private void adaptTenure(int newTenure) {
+		tenure = newTenure;
+		while (TL.size() > 2 * tenure)
+			pollTabu();
+		while (TL.size() < 2 * tenure)
+			TL.addFirst(IntTabuList.FAKE);
+	}
+
+	/**
+	 * Flips an element in the cost variation cache and updates the keys of
+	 * the elements whose cost variation changed.
+	 */
+	private void flip(int i) {
+		cache.flip(i);
+		zobrist.flip(i);
+		heapOf(i).set(i, cache.delta(i));
+		for (int j : cache.getNeighbors(i))
+			heapOf(j).set(j, cache.delta(j));
+	}
+
+	/**
+	 * Appends an element (or the fake element) to the Tabu List, moving it to
+	 * the tabu heap.
+	 */
+	private void addTabu(int e) {
+		boolean wasTabu = TL.contains(e);
+		TL.add(e);
+		if (e != IntTabuList.FAKE && !wasTabu) {
+			freeHeap.remove(e);
+			tabuHeap.set(e, cache.delta(e));
+		}
+	}
+
+	/**
+	 * Removes the oldest element of the Tabu List, moving it back to the
+	 * non-tabu heap when it is no longer tabu.
+	 */
+	private void pollTabu() {
+		int e = TL.poll();
+		if (e != IntTabuList.FAKE && !TL.contains(e)) {
+			tabuHeap.remove(e);
+			freeHeap.set(e, cache.delta(e));
+		}
+	}
+
+	private IndexedMinHeap heapOf(int i) {
+		return TL.contains(i) ? tabuHeap : freeHeap;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The cost variation cache and the move heaps are written as they are,
+	 * so ties between moves are broken in the same way after a resume.
+	 */
+	@Override
+	protected void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		cache.writeState(out);
+		freeHeap.writeState(out);
+		tabuHeap.writeState(out);
+		out.writeBoolean(reactive != null);
+		if (reactive != null)
+			reactive.writeState(out);
+	}
+
+	/* (non-Javadoc)
+	 * @see metaheuristics.tabusearch.AbstractIntTS#readState(java.io.DataInput)
+	 */
+	@Override
+	protected void readState(DataInput in) throws IOException {
+		super.readState(in);
+		cache.readState(in);
+		freeHeap.readState(in);
+		tabuHeap.readState(in);
+		if (in.readBoolean() != (reactive != null))
+			throw new IOException("checkpoint and solver disagree on the reactive tenure");
+		if (reactive != null)
+			reactive.readState(in);
+		zobrist.reset(incumbentSol);
+	}
+
 	/**
 	 * A main method used for testing the TS metaheuristic.
 	 * 
@@ -186,7 +510,7 @@ public class TS_QBF extends AbstractTS<Integer> {
 
 		long startTime = System.currentTimeMillis();
 		TS_QBF tabusearch = new TS_QBF(20, 10000, "instances/qbf100");
-		Solution<Integer> bestSol = tabusearch.solve();
+		IntSolution bestSol = tabusearch.solve();
 		System.out.println("maxVal = " + bestSol);
 		long endTime   = System.currentTimeMillis();
 		long totalTime = endTime - startTime;
@@ -5,15 +5,17 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StreamTokenizer;
-import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.List;
 
-import problems.Evaluator;
+import problems.ConflictConstraints;
+import problems.IntEvaluator;
+import solutions.IntSet;
+import solutions.IntSolution;
 import solutions.Solution;
 
-public class QBFPT extends Evaluator<Integer> {
+public class QBFPT extends IntEvaluator {
 
     /**
      * Dimension of the domain.
@@ -23,17 +25,17 @@ public class QBFPT extends Evaluator<Integer> {
     /**
      * The array of numbers representing the domain.
      */
-    public final Double[] variables;
+    public final double[] variables;
 
     /**
      * The matrix A of coefficients for the QBFPT f(x) = x'.A.x
      */
-    public Double[][] A;
+    public double[][] A;
 
     /**
-     * The list T of prohibited tuples
+     * The list T of prohibited tuples, indexed by variable
      */
-    public Integer[][] prohibited_triples;
+    public ConflictConstraints conflicts;
 
     /**
      * The constructor for QuadracticBinaryFunction class. The filename of the
@@ -48,11 +50,46 @@ public class QBFPT extends Evaluator<Integer> {
     public QBFPT(String filename) throws IOException {
         size = readInput(filename);
         variables = allocateVariables();
-        prohibited_triples = mountProhibitedList();
+        conflicts = mountProhibitedList();
+    }
+
+    /**
+     * Constructor for the QBFPT class with the prohibited tuples read from a
+     * conflict file (see {@link ConflictConstraints}) instead of the
+     * generated triples.
+     *
+     * @param filename
+     *            Name of the file containing the input for setting the QBF.
+     * @param conflictsFilename
+     *            Name of the conflict file.
+     * @throws IOException
+     *             Necessary for I/O operations.
+     */
+    public QBFPT(String filename, String conflictsFilename) throws IOException {
+        size = readInput(filename);
+        variables = allocateVariables();
+        conflicts = ConflictConstraints.read(conflictsFilename, size);
+    }
+
+    /**
+     * Constructor for the QBFPT class over a matrix and constraints already
+     * in memory, such as a reduced instance (see
+     * {@link problems.qbf.QBFReduction}).
+     *
+     * @param A
+     *            The matrix of coefficients, which is not copied.
+     * @param conflicts
+     *            The prohibited tuples.
+     */
+    public QBFPT(double[][] A, ConflictConstraints conflicts) {
+        this.A = A;
+        size = A.length;
+        variables = allocateVariables();
+        this.conflicts = conflicts;
     }
 
 
-    public Integer[][] mountProhibitedList() {
+    public ConflictConstraints mountProhibitedList() {
         Integer[][] triples = new Integer[size][3];
         for (int i = 0; i < size; i++) {
             triples[i][0] = i+1;
@@ -78,13 +115,29 @@ public class QBFPT extends Evaluator<Integer> {
             triples[i][1] = middle-1;
             triples[i][2] = maxi-1;
         }
-        return triples;
+        List<int[]> list = new ArrayList<int[]>(size);
+        for (Integer[] triple : triples)
+            list.add(new int[] { triple[0], triple[1], triple[2] });
+        return new ConflictConstraints(size, list);
+    }
+
+    /**
+     * Tells whether an element can be inserted into a solution without
+     * completing a prohibited triple. It only looks at the triples of the
+     * element.
+     *
+     * @param i
+     *            the element under consideration for insertion.
+     * @param x
+     *            the binary vector of the solution.
+     * @return true if the insertion is feasible.
+     */
+    public boolean isInsertionFeasible(int i, boolean[] x) {
+        return conflicts.canInsert(i, x);
     }
 
     public void printProhibitedList() {
-        for (int i = 0; i < size; i++) {
-            System.out.println(prohibited_triples[i][0] + " " + prohibited_triples[i][1] + " " +  prohibited_triples[i][2]);
-        }
+        conflicts.print();
     }
 
     private Integer lFunction(Integer u, Integer pi_1, Integer pi_2) {
@@ -92,28 +145,6 @@ public class QBFPT extends Evaluator<Integer> {
     }
 
 
-    public ArrayList<Integer> GetCL(ArrayList<Integer> incumbentSol) {
-        HashSet<Integer> sol = new HashSet<Integer> (incumbentSol);
-
-
-		HashSet<Integer> CL = new HashSet<Integer>();
-		for (int i = 0; i < this.getDomainSize(); i++)
-			if (!sol.contains(i))
-				CL.add(i);
-
-        for (int i = 0; i < this.prohibited_triples.length; i++)
-        {
-            if (sol.contains(this.prohibited_triples[i][2]) && sol.contains(this.prohibited_triples[i][1]))
-                CL.remove(prohibited_triples[i][0]);
-            if (sol.contains(this.prohibited_triples[i][0]) && sol.contains(this.prohibited_triples[i][2]))
-                CL.remove(prohibited_triples[i][1]);
-            if (sol.contains(this.prohibited_triples[i][0]) && sol.contains(this.prohibited_triples[i][1]))
-                CL.remove(prohibited_triples[i][2]);
-        }
-
-        return new ArrayList<Integer> (CL);
-    }
-
     /**
      * Evaluates the value of a solution by transforming it into a vector. This
      * is required to perform the matrix multiplication which defines a QBF.
@@ -165,18 +196,19 @@ public class QBFPT extends Evaluator<Integer> {
      *
      * @return The value of the QBF.
      */
-    public Double evaluateQBF() {
+    public double evaluateQBF() {
 
-        Double aux = (double) 0, sum = (double) 0;
-        Double vecAux[] = new Double[size];
+        double aux = 0.0, sum = 0.0;
 
         for (int i = 0; i < size; i++) {
+            if (variables[i] == 0)
+                continue;
+            double[] Ai = A[i];
             for (int j = 0; j < size; j++) {
-                aux += variables[j] * A[i][j];
+                aux += variables[j] * Ai[j];
             }
-            vecAux[i] = aux;
-            sum += aux * variables[i];
-            aux = (double) 0;
+            sum += aux;
+            aux = 0.0;
         }
 
         return sum;
@@ -206,7 +238,7 @@ public class QBFPT extends Evaluator<Integer> {
      * @return Ihe variation of the objective function resulting from the
      *         insertion.
      */
-    public Double evaluateInsertionQBF(int i) {
+    public double evaluateInsertionQBF(int i) {
 
         if (variables[i] == 1)
             return 0.0;
@@ -237,7 +269,7 @@ public class QBFPT extends Evaluator<Integer> {
      * @return The variation of the objective function resulting from the
      *         removal.
      */
-    public Double evaluateRemovalQBF(int i) {
+    public double evaluateRemovalQBF(int i) {
 
         if (variables[i] == 0)
             return 0.0;
@@ -273,16 +305,16 @@ public class QBFPT extends Evaluator<Integer> {
      * @return The variation of the objective function resulting from the
      *         exchange.
      */
-    public Double evaluateExchangeQBF(int in, int out) {
+    public double evaluateExchangeQBF(int in, int out) {
 
-        Double sum = 0.0;
+        double sum = 0.0;
 
         if (in == out)
             return 0.0;
         if (variables[in] == 1)
-            return evaluateRemovalQBF(out);
+            return variables[out] == 0 ? 0.0 : -evaluateContributionQBF(out);
         if (variables[out] == 0)
-            return evaluateInsertionQBF(in);
+            return evaluateContributionQBF(in);
 
         sum += evaluateContributionQBF(in);
         sum -= evaluateContributionQBF(out);
@@ -305,9 +337,9 @@ public class QBFPT extends Evaluator<Integer> {
      * @return the variation of the objective function resulting from the
      *         insertion.
      */
-    private Double evaluateContributionQBF(int i) {
+    private double evaluateContributionQBF(int i) {
 
-        Double sum = 0.0;
+        double sum = 0.0;
 
         for (int j = 0; j < size; j++) {
             if (i != j)
@@ -318,6 +350,88 @@ public class QBFPT extends Evaluator<Integer> {
         return sum;
     }
 
+    /**
+     * Evaluates the value of a solution by transforming it into a vector.
+     *
+     * @param sol
+     *            the solution which will be evaluated.
+     */
+    public void setVariables(IntSet sol) {
+
+        resetVariables();
+        for (int k = 0; k < sol.size(); k++)
+            variables[sol.get(k)] = 1.0;
+
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see problems.IntEvaluator#evaluate(solutions.IntSolution)
+     */
+    @Override
+    public double evaluate(IntSolution sol) {
+
+        setVariables(sol);
+        return sol.cost = evaluateQBF();
+
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see problems.IntEvaluator#evaluateInsertionCost(int,
+     * solutions.IntSolution)
+     */
+    @Override
+    public double evaluateInsertionCost(int elem, IntSolution sol) {
+
+        setVariables(sol);
+        return evaluateInsertionQBF(elem);
+
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see problems.IntEvaluator#evaluateRemovalCost(int,
+     * solutions.IntSolution)
+     */
+    @Override
+    public double evaluateRemovalCost(int elem, IntSolution sol) {
+
+        setVariables(sol);
+        return evaluateRemovalQBF(elem);
+
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see problems.IntEvaluator#evaluateExchangeCost(int, int,
+     * solutions.IntSolution)
+     */
+    @Override
+    public double evaluateExchangeCost(int elemIn, int elemOut, IntSolution sol) {
+
+        setVariables(sol);
+        return evaluateExchangeQBF(elemIn, elemOut);
+
+    }
+
+    /**
+     * {@inheritDoc} The solution is converted into the vector of variables
+     * only once for the whole batch.
+     */
+    @Override
+    public void evaluateInsertionCosts(int[] cands, int count, IntSolution sol, double[] out) {
+
+        setVariables(sol);
+        for (int k = 0; k < count; k++)
+            out[k] = evaluateInsertionQBF(cands[k]);
+
+    }
+
     /**
      * Responsible for setting the QBF function parameters by reading the
      * necessary input from an external file. this method reads the domain's
@@ -337,7 +451,7 @@ public class QBFPT extends Evaluator<Integer> {
 
         stok.nextToken();
         Integer _size = (int) stok.nval;
-        A = new Double[_size][_size];
+        A = new double[_size][_size];
 
         for (int i = 0; i < _size; i++) {
             for (int j = i; j < _size; j++) {
@@ -359,8 +473,8 @@ public class QBFPT extends Evaluator<Integer> {
      *
      * @return a pointer to the array of domain variables.
      */
-    protected Double[] allocateVariables() {
-        Double[] _variables = new Double[size];
+    protected double[] allocateVariables() {
+        double[] _variables = new double[size];
         return _variables;
     }
 
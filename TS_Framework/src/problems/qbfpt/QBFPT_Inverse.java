@@ -2,6 +2,8 @@ package problems.qbfpt;
 
 import java.io.IOException;
 
+import problems.ConflictConstraints;
+
 public class QBFPT_Inverse extends QBFPT {
 
     /**
@@ -17,11 +19,40 @@ public class QBFPT_Inverse extends QBFPT {
         super(filename);
     }
 
+    /**
+     * Constructor for the QBFPT_Inverse class with the prohibited tuples read
+     * from a conflict file.
+     *
+     * @param filename
+     *            Name of the file for which the objective function parameters
+     *            should be read.
+     * @param conflictsFilename
+     *            Name of the conflict file.
+     * @throws IOException
+     *             Necessary for I/O operations.
+     */
+    public QBFPT_Inverse(String filename, String conflictsFilename) throws IOException {
+        super(filename, conflictsFilename);
+    }
+
+    /**
+     * Constructor for the QBFPT_Inverse class over a matrix and constraints
+     * already in memory.
+     *
+     * @param A
+     *            The matrix of coefficients, which is not copied.
+     * @param conflicts
+     *            The prohibited tuples.
+     */
+    public QBFPT_Inverse(double[][] A, ConflictConstraints conflicts) {
+        super(A, conflicts);
+    }
+
     /* (non-Javadoc)
      * @see problems.qbf.QBF#evaluate()
      */
     @Override
-    public Double evaluateQBF() {
+    public double evaluateQBF() {
         return -super.evaluateQBF();
     }
 
@@ -29,7 +60,7 @@ public class QBFPT_Inverse extends QBFPT {
      * @see problems.qbf.QBF#evaluateInsertion(int)
      */
     @Override
-    public Double evaluateInsertionQBF(int i) {
+    public double evaluateInsertionQBF(int i) {
         return -super.evaluateInsertionQBF(i);
     }
 
@@ -37,7 +68,7 @@ public class QBFPT_Inverse extends QBFPT {
      * @see problems.qbf.QBF#evaluateRemoval(int)
      */
     @Override
-    public Double evaluateRemovalQBF(int i) {
+    public double evaluateRemovalQBF(int i) {
         return -super.evaluateRemovalQBF(i);
     }
 
@@ -45,7 +76,7 @@ public class QBFPT_Inverse extends QBFPT {
      * @see problems.qbf.QBF#evaluateExchange(int, int)
      */
     @Override
-    public Double evaluateExchangeQBF(int in, int out) {
+    public double evaluateExchangeQBF(int in, int out) {
         return -super.evaluateExchangeQBF(in,out);
     }
 
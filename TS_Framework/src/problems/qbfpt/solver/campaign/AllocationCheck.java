@@ -0,0 +1,244 @@
+package problems.qbfpt.solver.campaign;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import problems.qbfpt.QBFPT_Inverse;
+import problems.qbfpt.solvers.TS_QBFPT;
+
+/**
+ * Allocation-rate regression check of the {@link TS_QBFPT} search. For every
+ * instance and {@link Variant}, a solver is set up by a short search, then
+ * the moves of the local search ({@link TS_QBFPT#neighborhoodMove()}) and the
+ * constructive heuristic ({@link TS_QBFPT#constructiveHeuristic()}) are run
+ * many times on the calling thread, after a warm-up that lets the JIT compile
+ * them, and the bytes they allocate are read from the thread allocation
+ * counter of the JVM. The check fails when a budget is exceeded, which keeps
+ * the primitive paths of the search from going back to boxing and copying.
+ *
+ * A check is described by a properties file:
+ *
+ * <pre>
+ * instances = ../instances/qbf040, ../instances/qbf200
+ * warmup = 20000
+ * moves = 20000
+ * constructions = 200
+ * seed = 0
+ * budget.move = 0
+ * budget.construction = 48
+ * budget.move.relinking = 64
+ * variant.standard = tenure=10
+ * variant.relinking = tenure=10 relinking=10:5:500
+ * </pre>
+ *
+ * The budgets are in bytes per move and per construction, with an optional
+ * k or m suffix, and a budget followed by the name of a variant overrides
+ * the default one for that variant. The constructive heuristic allocates its
+ * candidate lists, whose size is proportional to the instance, so its budget
+ * is per variable of the instance.
+ */
+public class AllocationCheck {
+
+    /**
+     * the result of the check of a variant on an instance.
+     */
+    private static class Result {
+
+        final String instance;
+        final Variant variant;
+        final double moveBytes;
+        final double constructionBytes;
+        final boolean passed;
+
+        Result(String instance, Variant variant, double moveBytes, double constructionBytes, boolean passed) {
+            this.instance = instance;
+            this.variant = variant;
+            this.moveBytes = moveBytes;
+            this.constructionBytes = constructionBytes;
+            this.passed = passed;
+        }
+
+    }
+
+    private final List<String> instances = new ArrayList<String>();
+    private final List<Variant> variants = new ArrayList<Variant>();
+    private final Properties props;
+    private final int warmup;
+    private final int moves;
+    private final int constructions;
+    private final long seed;
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Constructor for the AllocationCheck class.
+     *
+     * @param props
+     *            The description of the check.
+     * @param base
+     *            The directory against which relative instance paths are
+     *            resolved, or null.
+     * @throws UnsupportedOperationException
+     *             if the JVM does not count the bytes allocated by a thread.
+     */
+    public AllocationCheck(Properties props, File base) {
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+            throw new UnsupportedOperationException("this JVM does not count the bytes allocated by a thread");
+        this.threads = (com.sun.management.ThreadMXBean) bean;
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (String s : Campaign.list(props, "instances"))
+            instances.add(Campaign.resolve(base, s).getPath());
+        for (String key : new TreeSet<String>(props.stringPropertyNames()))
+            if (key.startsWith("variant."))
+                variants.add(new Variant(key.substring("variant.".length()), props.getProperty(key)));
+        if (variants.isEmpty())
+            variants.add(new Variant("default", ""));
+        this.props = props;
+        this.warmup = Integer.parseInt(props.getProperty("warmup", "20000").trim());
+        this.moves = Integer.parseInt(props.getProperty("moves", "20000").trim());
+        this.constructions = Integer.parseInt(props.getProperty("constructions", "200").trim());
+        this.seed = Long.parseLong(props.getProperty("seed", "0").trim());
+    }
+
+    /**
+     * Reads a check file.
+     *
+     * @param filename
+     *            The check file.
+     * @return The check.
+     * @throws IOException
+     *             necessary for I/O operations.
+     */
+    public static AllocationCheck read(String filename) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = new FileReader(filename)) {
+            props.load(in);
+        }
+        return new AllocationCheck(props, new File(filename).getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Runs the check, printing a line per instance and variant.
+     *
+     * @return true if every budget was met.
+     * @throws IOException
+     *             necessary for I/O operations.
+     */
+    public boolean run() throws IOException {
+        boolean passed = true;
+        System.out.printf("%-24s %-16s %14s %18s%n", "instance", "variant", "bytes/move", "bytes/construction");
+        for (String instance : instances) {
+            for (Variant variant : variants) {
+                Result r = check(instance, variant);
+                System.out.printf("%-24s %-16s %14.1f %18.1f %s%n", new File(r.instance).getName(), r.variant.name,
+                        r.moveBytes, r.constructionBytes, r.passed ? "ok" : "OVER BUDGET");
+                passed &= r.passed;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Measures the allocations of a variant on an instance. The progress
+     * lines the solver prints are discarded meanwhile.
+     */
+    private Result check(String instance, Variant variant) throws IOException {
+
+        QBFPT_Inverse objFunction = new QBFPT_Inverse(instance);
+        int n = objFunction.getDomainSize();
+        TS_QBFPT ts = variant.create(objFunction, 0, seed);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        double moveBytes, constructionBytes;
+        try {
+            ts.solve();
+            for (int k = 0; k < warmup; k++)
+                ts.neighborhoodMove();
+            long bias = allocated() - allocated();
+            long before = allocated();
+            for (int k = 0; k < moves; k++)
+                ts.neighborhoodMove();
+            moveBytes = (double) Math.max(0, allocated() - before + bias) / moves;
+
+            for (int k = 0; k < Math.max(1, constructions / 10); k++)
+                ts.constructiveHeuristic();
+            before = allocated();
+            for (int k = 0; k < constructions; k++)
+                ts.constructiveHeuristic();
+            constructionBytes = (double) Math.max(0, allocated() - before + bias) / constructions;
+        } finally {
+            System.setOut(out);
+        }
+
+        boolean passed = moveBytes <= budget("move", variant) + 1e-9
+                && constructionBytes <= budget("construction", variant) * n + 1e-9;
+        return new Result(instance, variant, moveBytes, constructionBytes, passed);
+    }
+
+    /**
+     * @return The bytes allocated so far by the calling thread.
+     */
+    private long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Gives the budget of an operation for a variant, in bytes.
+     */
+    private double budget(String operation, Variant variant) {
+        String value = props.getProperty("budget." + operation + "." + variant.name);
+        if (value == null)
+            value = props.getProperty("budget." + operation);
+        if (value == null)
+            return Double.POSITIVE_INFINITY;
+        value = value.trim().toLowerCase();
+        double unit = 1;
+        if (value.endsWith("k")) {
+            unit = 1024;
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            unit = 1024 * 1024;
+            value = value.substring(0, value.length() - 1);
+        }
+        return Double.parseDouble(value.trim()) * unit;
+    }
+
+    /**
+     * Runs the check described by the file given as argument, and exits with
+     * status 1 if a budget was exceeded.
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length != 1) {
+            System.err.println("usage: AllocationCheck <check file>");
+            System.exit(2);
+        }
+        TS_QBFPT.verbose = false;
+        if (!read(args[0]).run()) {
+            System.out.println("Allocation budget exceeded");
+            System.exit(1);
+        }
+
+    }
+
+}
@@ -0,0 +1,450 @@
+package problems.qbfpt.solver.campaign;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import metaheuristics.tabusearch.SearchListener;
+import problems.qbf.QBFReduction;
+import problems.qbfpt.QBFPT_Inverse;
+import problems.qbfpt.solvers.TS_QBFPT;
+import solutions.IntSolution;
+
+/**
+ * An experiment campaign: every combination of instances, solver variants,
+ * seeds and time budgets is a job, and the jobs run on a fixed pool of
+ * worker threads, one solver per thread. The result of each job is appended
+ * to a CSV file and to a JSON Lines file as soon as it finishes, so the
+ * results of a campaign that is interrupted are not lost.
+ *
+ * A campaign is described by a properties file:
+ *
+ * <pre>
+ * instances = ../instances/qbf020, ../instances/qbf040
+ * seeds = 0-9
+ * budgets = 30s, 10m
+ * threads = 8
+ * csv = results.csv
+ * json = results.jsonl
+ * variant.standard = tenure=10
+ * variant.reactive = tenure=10 reactive
+ * </pre>
+ *
+ * Seeds are given as a list of numbers or ranges; budgets in milliseconds or
+ * with a suffix ms, s, m or h; threads defaults to the number of available
+ * processors. Every property variant.name defines a {@link Variant}.
+ * Relative paths are resolved against the directory of the campaign file.
+ * The jobs with the largest budgets are scheduled first, which keeps the
+ * workers busy until the end of the campaign.
+ */
+public class Campaign {
+
+    /**
+     * A single run of a variant over an instance.
+     */
+    public static class Job {
+
+        public final String instance;
+        public final Variant variant;
+        public final long seed;
+        public final long budget;
+
+        /**
+         * the best solution found, or null if the job failed.
+         */
+        public IntSolution solution;
+
+        /**
+         * the upper bound on the optimal value known at the end of the job;
+         * it equals the value of the solution when it is proven optimal.
+         */
+        public double bound = Double.POSITIVE_INFINITY;
+
+        /**
+         * the wall-clock time of the job, in milliseconds.
+         */
+        public long time;
+
+        /**
+         * the failure of the job, or null.
+         */
+        public String error;
+
+        public Job(String instance, Variant variant, long seed, long budget) {
+            this.instance = instance;
+            this.variant = variant;
+            this.seed = seed;
+            this.budget = budget;
+        }
+
+        /**
+         * Runs the job, recording its solution or its failure.
+         */
+        public void run() {
+            run(null);
+        }
+
+        /**
+         * Runs the job, recording its solution or its failure.
+         *
+         * @param listener
+         *            The listener of the solver, or null.
+         */
+        public void run(SearchListener listener) {
+            run(null, listener);
+        }
+
+        /**
+         * Runs the job over an instance already loaded, recording its
+         * solution or its failure.
+         *
+         * @param objFunction
+         *            The inverse QBFPT of the instance, owned by the job, or
+         *            null to read it from the instance file.
+         * @param listener
+         *            The listener of the solver, or null.
+         */
+        public void run(QBFPT_Inverse objFunction, SearchListener listener) {
+            long startTime = System.currentTimeMillis();
+            try {
+                if (objFunction == null)
+                    objFunction = new QBFPT_Inverse(instance);
+                if (variant.reduces()) {
+                    runReduced(objFunction, listener, startTime);
+                } else {
+                    TS_QBFPT ts = variant.create(objFunction, budget, seed);
+                    ts.setListener(listener);
+                    solution = new IntSolution(ts.solve());
+                    bound = -ts.getLowerBound();
+                }
+            } catch (Exception | OutOfMemoryError e) {
+                error = e.toString();
+            }
+            time = System.currentTimeMillis() - startTime;
+        }
+
+        /**
+         * Runs the solver on the reduced instance, within what is left of the
+         * budget, and maps its solution and bound back to the instance.
+         */
+        private void runReduced(QBFPT_Inverse full, final SearchListener listener, long startTime) {
+            final QBFReduction reduction = new QBFReduction(full.A, full.conflicts);
+            if (reduction.getDomainSize() == 0) {
+                IntSolution empty = new IntSolution(0);
+                empty.cost = 0.0;
+                solution = reduction.expand(empty);
+                bound = -solution.cost;
+                if (listener != null)
+                    listener.bestImproved(solution, System.currentTimeMillis() - startTime);
+                return;
+            }
+            long left = Math.max(0, budget - (System.currentTimeMillis() - startTime));
+            TS_QBFPT ts = variant.create(new QBFPT_Inverse(reduction.getA(), reduction.getConflicts()), left, seed);
+            if (listener != null) {
+                ts.setListener(new SearchListener() {
+                    @Override
+                    public void bestImproved(IntSolution bestSol, long elapsed) {
+                        listener.bestImproved(reduction.expand(bestSol), elapsed);
+                    }
+                });
+            }
+            solution = reduction.expand(ts.solve());
+            bound = -ts.getLowerBound() + reduction.getConstant();
+        }
+
+    }
+
+    private final List<String> instances = new ArrayList<String>();
+    private final List<Variant> variants = new ArrayList<Variant>();
+    private final List<Long> seeds = new ArrayList<Long>();
+    private final List<Long> budgets = new ArrayList<Long>();
+    private final int threads;
+    private final File csv, json;
+
+    private Writer csvWriter, jsonWriter;
+    private int finished, total;
+
+    /**
+     * Constructor for the Campaign class.
+     *
+     * @param props
+     *            The description of the campaign.
+     * @param base
+     *            The directory against which relative paths are resolved.
+     * @throws IllegalArgumentException
+     *             if the description is incomplete or malformed.
+     */
+    public Campaign(Properties props, File base) {
+
+        for (String s : list(props, "instances"))
+            instances.add(resolve(base, s).getPath());
+        for (String s : list(props, "seeds")) {
+            int dash = s.indexOf('-', 1);
+            if (dash < 0) {
+                seeds.add(Long.parseLong(s));
+            } else {
+                long from = Long.parseLong(s.substring(0, dash).trim());
+                long to = Long.parseLong(s.substring(dash + 1).trim());
+                for (long seed = from; seed <= to; seed++)
+                    seeds.add(seed);
+            }
+        }
+        for (String s : list(props, "budgets"))
+            budgets.add(parseDuration(s));
+        for (String key : new TreeSet<String>(props.stringPropertyNames()))
+            if (key.startsWith("variant."))
+                variants.add(new Variant(key.substring("variant.".length()), props.getProperty(key)));
+        if (variants.isEmpty())
+            throw new IllegalArgumentException("the campaign defines no variant");
+
+        String t = props.getProperty("threads", "").trim();
+        int n = t.isEmpty() ? 0 : Integer.parseInt(t);
+        this.threads = n > 0 ? n : Runtime.getRuntime().availableProcessors();
+        String c = props.getProperty("csv", "").trim();
+        String j = props.getProperty("json", "").trim();
+        this.csv = c.isEmpty() ? null : resolve(base, c);
+        this.json = j.isEmpty() ? null : resolve(base, j);
+    }
+
+    /**
+     * Reads a campaign file.
+     *
+     * @param filename
+     *            The campaign file.
+     * @return The campaign.
+     * @throws IOException
+     *             necessary for I/O operations.
+     */
+    public static Campaign read(String filename) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = new FileReader(filename)) {
+            props.load(in);
+        }
+        return new Campaign(props, new File(filename).getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * @return the jobs of the campaign, in the order they are scheduled.
+     */
+    public List<Job> jobs() {
+        List<Job> jobs = new ArrayList<Job>();
+        for (long budget : budgets)
+            for (String instance : instances)
+                for (Variant variant : variants)
+                    for (long seed : seeds)
+                        jobs.add(new Job(instance, variant, seed, budget));
+        Collections.sort(jobs, new Comparator<Job>() {
+            @Override
+            public int compare(Job a, Job b) {
+                return Long.compare(b.budget, a.budget);
+            }
+        });
+        return jobs;
+    }
+
+    /**
+     * Runs every job of the campaign and waits for them to finish.
+     *
+     * @throws IOException
+     *             if a results file cannot be written.
+     * @throws InterruptedException
+     *             if the wait is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+
+        List<Job> jobs = jobs();
+        openResults(jobs.size());
+        try {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            for (final Job job : jobs) {
+                pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        job.run();
+                        report(job);
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            closeResults();
+        }
+    }
+
+    /**
+     * Creates the results files, which are written by
+     * {@link #report(Job)}.
+     *
+     * @param total
+     *            The number of jobs to be reported.
+     * @throws IOException
+     *             if a results file cannot be created.
+     */
+    void openResults(int total) throws IOException {
+        csvWriter = csv == null ? null : new BufferedWriter(new FileWriter(csv));
+        jsonWriter = json == null ? null : new BufferedWriter(new FileWriter(json));
+        finished = 0;
+        this.total = total;
+        if (csvWriter != null) {
+            csvWriter.write("instance,variant,seed,budget,value,bound,size,time,solution,error\n");
+            csvWriter.flush();
+        }
+    }
+
+    /**
+     * Closes the results files.
+     *
+     * @throws IOException
+     *             if a results file cannot be written.
+     */
+    void closeResults() throws IOException {
+        if (csvWriter != null)
+            csvWriter.close();
+        if (jsonWriter != null)
+            jsonWriter.close();
+    }
+
+    /**
+     * Writes the result of a finished job.
+     *
+     * @param job
+     *            The job, with its solution or its failure.
+     */
+    synchronized void report(Job job) {
+
+        String value = job.solution == null ? "" : format(-job.solution.cost);
+        String bound = job.solution == null ? "" : format(job.bound);
+        String size = job.solution == null ? "" : Integer.toString(job.solution.size());
+        String solution = "";
+        if (job.solution != null) {
+            int elements[] = Arrays.copyOf(job.solution.elements(), job.solution.size());
+            Arrays.sort(elements);
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < elements.length; k++)
+                sb.append(k > 0 ? " " : "").append(elements[k]);
+            solution = sb.toString();
+        }
+        String error = job.error == null ? "" : job.error;
+
+        finished++;
+        System.out.println("[" + finished + "/" + total + "] " + job.instance + " " + job.variant.name + " seed="
+                + job.seed + " budget=" + job.budget + (job.error == null ? " value=" + value : " failed: " + error));
+
+        try {
+            if (csvWriter != null) {
+                csvWriter.write(csvField(job.instance) + "," + csvField(job.variant.name) + "," + job.seed + ","
+                        + job.budget + "," + value + "," + bound + "," + size + "," + job.time + "," + solution + ","
+                        + csvField(error) + "\n");
+                csvWriter.flush();
+            }
+            if (jsonWriter != null) {
+                jsonWriter.write("{\"instance\":" + jsonString(job.instance) + ",\"variant\":"
+                        + jsonString(job.variant.name) + ",\"options\":" + jsonString(job.variant.spec)
+                        + ",\"seed\":" + job.seed + ",\"budget\":" + job.budget + ",\"value\":"
+                        + (value.isEmpty() ? "null" : value) + ",\"bound\":" + (bound.isEmpty() ? "null" : bound)
+                        + ",\"size\":" + (size.isEmpty() ? "null" : size)
+                        + ",\"time\":" + job.time + ",\"solution\":"
+                        + (job.solution == null ? "null" : "[" + solution.replace(' ', ',') + "]")
+                        + ",\"error\":" + (job.error == null ? "null" : jsonString(error)) + "}\n");
+                jsonWriter.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write the result of " + job.instance + " " + job.variant.name + ": " + e);
+        }
+    }
+
+    static List<String> list(Properties props, String key) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            throw new IllegalArgumentException("the campaign defines no " + key);
+        List<String> items = new ArrayList<String>();
+        for (String s : value.split(","))
+            if (!s.trim().isEmpty())
+                items.add(s.trim());
+        return items;
+    }
+
+    static File resolve(File base, String path) {
+        File f = new File(path);
+        return f.isAbsolute() || base == null ? f : new File(base, path);
+    }
+
+    /**
+     * Parses a duration in milliseconds, with an optional unit suffix (ms, s,
+     * m or h).
+     */
+    static long parseDuration(String s) {
+        long unit = 1;
+        if (s.endsWith("ms"))
+            s = s.substring(0, s.length() - 2);
+        else if (s.endsWith("s")) {
+            s = s.substring(0, s.length() - 1);
+            unit = 1000;
+        } else if (s.endsWith("m")) {
+            s = s.substring(0, s.length() - 1);
+            unit = 60 * 1000;
+        } else if (s.endsWith("h")) {
+            s = s.substring(0, s.length() - 1);
+            unit = 60 * 60 * 1000;
+        }
+        return (long) (Double.parseDouble(s.trim()) * unit);
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+            return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int k = 0; k < s.length(); k++) {
+            char c = s.charAt(k);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Runs the campaign described by the file given as argument.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length != 1) {
+            System.err.println("usage: Campaign <campaign file>");
+            System.exit(2);
+        }
+        TS_QBFPT.verbose = false;
+        long startTime = System.currentTimeMillis();
+        Campaign campaign = read(args[0]);
+        campaign.run();
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("Time = " + (double) totalTime / (double) 1000 + " seg");
+
+    }
+
+}
@@ -0,0 +1,271 @@
+package problems.qbfpt.solver.campaign;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import problems.qbfpt.solver.campaign.Campaign.Job;
+import solutions.IntSolution;
+
+/**
+ * Runs the jobs of a {@link Campaign} on {@link Worker} processes, local or
+ * remote, connected over TCP. Every connection of a worker runs one job at a
+ * time: the coordinator sends the instance file (once per connection) and the
+ * job, the worker streams back the improvements of its best solution and then
+ * the result. If a connection is lost before the result arrives, its job goes
+ * back to the front of the queue and is given to another worker. The results
+ * are written to the files of the campaign as they arrive.
+ *
+ * The protocol is a sequence of messages written with {@link DataOutputStream},
+ * each one starting with its type:
+ *
+ * <pre>
+ * worker      HELLO name
+ * coordinator INSTANCE path length bytes
+ * coordinator JOB id instance variant options seed budget
+ * worker      BEST id cost elapsed
+ * worker      RESULT id cost bound time domainSize size elements...
+ * worker      FAILED id time message
+ * coordinator BYE
+ * </pre>
+ */
+public class Coordinator {
+
+    static final String HELLO = "HELLO", INSTANCE = "INSTANCE", JOB = "JOB", BEST = "BEST", RESULT = "RESULT",
+            FAILED = "FAILED", BYE = "BYE";
+
+    /**
+     * the time, in milliseconds, a worker may stay silent beyond the budget
+     * of its job before it is considered lost.
+     */
+    private static final long GRACE = 60 * 1000;
+
+    private final Campaign campaign;
+    private final List<Job> jobs;
+    private final LinkedBlockingDeque<Integer> queue = new LinkedBlockingDeque<Integer>();
+    private final CountDownLatch remaining;
+    private final ServerSocket server;
+    private final Map<String, byte[]> instanceFiles = new HashMap<String, byte[]>();
+    private final List<Thread> connections = new ArrayList<Thread>();
+
+    /**
+     * Constructor for the Coordinator class.
+     *
+     * @param campaign
+     *            The campaign to run.
+     * @param port
+     *            The port on which the workers connect.
+     * @throws IOException
+     *             if the port cannot be opened.
+     */
+    public Coordinator(Campaign campaign, int port) throws IOException {
+        this.campaign = campaign;
+        this.jobs = campaign.jobs();
+        for (int id = 0; id < jobs.size(); id++)
+            queue.add(id);
+        this.remaining = new CountDownLatch(jobs.size());
+        this.server = new ServerSocket(port);
+    }
+
+    /**
+     * Accepts workers until every job has a result.
+     *
+     * @throws IOException
+     *             if a results file cannot be written.
+     * @throws InterruptedException
+     *             if the wait is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+
+        campaign.openResults(jobs.size());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Thread t = new Thread(new Connection(server.accept()));
+                        t.setDaemon(true);
+                        t.start();
+                        synchronized (connections) {
+                            connections.add(t);
+                        }
+                    }
+                } catch (IOException e) {
+                    // the server socket was closed
+                }
+            }
+        }, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Coordinator listening on port " + server.getLocalPort() + ", " + jobs.size() + " jobs");
+
+        try {
+            remaining.await();
+        } finally {
+            server.close();
+            campaign.closeResults();
+        }
+
+        /* Let the idle connections say goodbye to their workers */
+        synchronized (connections) {
+            for (Thread t : connections)
+                t.join(2000);
+        }
+    }
+
+    /**
+     * @return The port on which the workers connect.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    private synchronized byte[] instanceFile(String instance) throws IOException {
+        byte data[] = instanceFiles.get(instance);
+        if (data == null) {
+            data = Files.readAllBytes(Paths.get(instance));
+            instanceFiles.put(instance, data);
+        }
+        return data;
+    }
+
+    /**
+     * The session of one worker connection.
+     */
+    private class Connection implements Runnable {
+
+        private final Socket socket;
+        private final Set<String> sent = new HashSet<String>();
+        private String name;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+            this.name = socket.getRemoteSocketAddress().toString();
+        }
+
+        @Override
+        public void run() {
+
+            Integer id = null;
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (!in.readUTF().equals(HELLO))
+                    throw new IOException("protocol error");
+                name = in.readUTF() + "@" + name;
+                System.out.println("Worker " + name + " connected");
+
+                while (remaining.getCount() > 0) {
+                    id = queue.pollFirst(1, TimeUnit.SECONDS);
+                    if (id == null)
+                        continue;
+                    Job job = jobs.get(id);
+                    if (sent.add(job.instance)) {
+                        byte data[] = instanceFile(job.instance);
+                        out.writeUTF(INSTANCE);
+                        out.writeUTF(job.instance);
+                        out.writeInt(data.length);
+                        out.write(data);
+                    }
+                    out.writeUTF(JOB);
+                    out.writeInt(id);
+                    out.writeUTF(job.instance);
+                    out.writeUTF(job.variant.name);
+                    out.writeUTF(job.variant.spec);
+                    out.writeLong(job.seed);
+                    out.writeLong(job.budget);
+                    out.flush();
+                    socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, job.budget + GRACE));
+                    receive(in, job, id);
+                    id = null;
+                    campaign.report(job);
+                    remaining.countDown();
+                }
+                out.writeUTF(BYE);
+                out.flush();
+            } catch (IOException | InterruptedException e) {
+                if (id != null) {
+                    queue.addFirst(id);
+                    System.out.println("Worker " + name + " lost (" + e + "), job " + id + " requeued");
+                }
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // nothing left to do with this worker
+                }
+            }
+        }
+
+        /**
+         * Reads the messages of the worker until the result of the job.
+         */
+        private void receive(DataInputStream in, Job job, int id) throws IOException {
+            while (true) {
+                String type = in.readUTF();
+                if (in.readInt() != id)
+                    throw new IOException("protocol error");
+                if (type.equals(BEST)) {
+                    double cost = in.readDouble();
+                    long elapsed = in.readLong();
+                    System.out.println("    " + name + " " + job.instance + " " + job.variant.name + " seed="
+                            + job.seed + ": " + (-cost) + " at " + (double) elapsed / (double) 1000 + " seg");
+                } else if (type.equals(RESULT)) {
+                    double cost = in.readDouble();
+                    job.bound = in.readDouble();
+                    job.time = in.readLong();
+                    IntSolution sol = new IntSolution(in.readInt());
+                    int size = in.readInt();
+                    for (int k = 0; k < size; k++)
+                        sol.add(in.readInt());
+                    sol.cost = cost;
+                    job.solution = sol;
+                    job.error = null;
+                    return;
+                } else if (type.equals(FAILED)) {
+                    job.time = in.readLong();
+                    job.error = in.readUTF();
+                    job.solution = null;
+                    return;
+                } else {
+                    throw new IOException("protocol error");
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Runs the campaign given as first argument, waiting for workers on the
+     * port given as second argument.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length != 2) {
+            System.err.println("usage: Coordinator <campaign file> <port>");
+            System.exit(2);
+        }
+        long startTime = System.currentTimeMillis();
+        Coordinator coordinator = new Coordinator(Campaign.read(args[0]), Integer.parseInt(args[1]));
+        coordinator.run();
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("Time = " + (double) totalTime / (double) 1000 + " seg");
+
+    }
+
+}
@@ -0,0 +1,384 @@
+package problems.qbfpt.solver.campaign;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import metaheuristics.tabusearch.SearchListener;
+import problems.ConflictConstraints;
+import problems.qbfpt.QBFPT;
+import problems.qbfpt.QBFPT_Inverse;
+import problems.qbfpt.solver.campaign.Campaign.Job;
+import problems.qbfpt.solvers.TS_QBFPT;
+import solutions.IntSolution;
+
+/**
+ * A resident solver service on the loopback interface, so that many short
+ * solves share a warm JVM instead of paying for its startup, the class
+ * loading, the JIT compilation and the parsing of the instance every time.
+ * The parsed instances are cached (the matrix and the prohibited triples are
+ * shared by the jobs, each one with its own evaluator) and the jobs run on a
+ * fixed pool of threads with a bounded queue. The uploaded instances are kept
+ * apart from the cache of files and are never evicted; an upload cannot take
+ * the name of an existing file.
+ *
+ * The protocol is made of text lines, so it can be driven by a script. A
+ * client sends commands and receives the replies and, asynchronously, the
+ * progress and the results of its jobs:
+ *
+ * <pre>
+ * UPLOAD name length          followed by length bytes of an instance file
+ *   OK name size
+ * SOLVE instance budget seed [options...]
+ *   QUEUED id                 instance is an uploaded name or a file path,
+ *                             the budget is given as in a campaign and the
+ *                             options as in a {@link Variant}
+ *   BEST id value elapsed
+ *   RESULT id value bound time size elements...
+ *   FAILED id message
+ * STATUS
+ *   STATUS queued running finished cached
+ * QUIT
+ * SHUTDOWN
+ * </pre>
+ *
+ * Any command that cannot be carried out is answered with ERROR and a
+ * message, for example when the queue is full. The jobs of a client still
+ * waiting in the queue are cancelled when it disconnects.
+ */
+public class SolverService {
+
+    /**
+     * the number of parsed instances kept in the cache.
+     */
+    private static final int CACHE_SIZE = 32;
+
+    /**
+     * the largest instance file accepted by UPLOAD, in bytes.
+     */
+    private static final int MAX_UPLOAD = 256 << 20;
+
+    /**
+     * A parsed instance, shared by the jobs that solve it.
+     */
+    private static class Instance {
+
+        final double[][] A;
+        final ConflictConstraints conflicts;
+        final long modified;
+
+        Instance(QBFPT qbfpt, long modified) {
+            this.A = qbfpt.A;
+            this.conflicts = qbfpt.conflicts;
+            this.modified = modified;
+        }
+
+    }
+
+    private final ServerSocket server;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, Instance> cache = new LinkedHashMap<String, Instance>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Instance> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final Map<String, Instance> uploads = new HashMap<String, Instance>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+
+    /**
+     * Constructor for the SolverService class.
+     *
+     * @param port
+     *            The port on the loopback interface, or 0 for any free port.
+     * @param threads
+     *            The number of jobs run at the same time.
+     * @param capacity
+     *            The number of jobs that may wait in the queue.
+     * @throws IOException
+     *             if the port cannot be opened.
+     */
+    public SolverService(int port, int threads, int capacity) throws IOException {
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(capacity));
+    }
+
+    /**
+     * @return The port on which the service listens.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts clients until the service is shut down.
+     */
+    public void run() {
+        try {
+            while (true) {
+                Thread t = new Thread(new Session(server.accept()));
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (IOException e) {
+            // the server socket was closed
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops accepting clients and discards the jobs still waiting in the
+     * queue. The running jobs are interrupted, but the search does not check
+     * the flag, so they go on until their budgets.
+     */
+    public void shutdown() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // nothing left to do with the server socket
+        }
+    }
+
+    /**
+     * Gives a parsed instance file, from the cache unless the file changed.
+     */
+    private Instance load(String path) throws IOException {
+        File file = new File(path).getCanonicalFile();
+        String key = file.getPath();
+        long modified = file.lastModified();
+        synchronized (cache) {
+            Instance instance = cache.get(key);
+            if (instance != null && instance.modified == modified)
+                return instance;
+        }
+        if (!file.isFile())
+            throw new IOException("no instance " + path);
+        Instance instance = new Instance(new QBFPT(key), modified);
+        synchronized (cache) {
+            cache.put(key, instance);
+        }
+        return instance;
+    }
+
+    /**
+     * The session of one client.
+     */
+    private class Session implements Runnable {
+
+        private final Socket socket;
+        private OutputStream out;
+        private final List<Future<?>> jobs = new ArrayList<Future<?>>();
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                out = new BufferedOutputStream(socket.getOutputStream());
+                String line;
+                while ((line = readLine(in)) != null) {
+                    String words[] = line.trim().split("\\s+");
+                    try {
+                        if (words[0].isEmpty())
+                            continue;
+                        else if (words[0].equals("QUIT"))
+                            break;
+                        else if (words[0].equals("SHUTDOWN")) {
+                            send("OK");
+                            shutdown();
+                            break;
+                        } else if (words[0].equals("STATUS"))
+                            send("STATUS " + pool.getQueue().size() + " " + running.get() + " " + finished.get()
+                                    + " " + cacheSize());
+                        else if (words[0].equals("UPLOAD") && words.length == 3)
+                            upload(in, words[1], Integer.parseInt(words[2]));
+                        else if (words[0].equals("SOLVE") && words.length >= 4)
+                            solve(words, line);
+                        else
+                            send("ERROR unknown command " + words[0]);
+                    } catch (IllegalArgumentException | IOException | RejectedExecutionException e) {
+                        send("ERROR " + (e instanceof RejectedExecutionException ? "the queue is full" : e.getMessage()));
+                    }
+                }
+            } catch (IOException e) {
+                // the client is gone
+            } finally {
+                synchronized (jobs) {
+                    for (Future<?> f : jobs)
+                        f.cancel(false);
+                }
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // nothing left to do with this client
+                }
+            }
+        }
+
+        private void upload(InputStream in, String name, int length) throws IOException {
+            if (length < 0)
+                throw new IllegalArgumentException("negative length " + length);
+            DataInputStream input = new DataInputStream(in);
+            if (length > MAX_UPLOAD) {
+                // skip the file, so the next command is read in sync
+                byte buffer[] = new byte[8192];
+                for (int left = length; left > 0; left -= buffer.length)
+                    input.readFully(buffer, 0, Math.min(left, buffer.length));
+                throw new IllegalArgumentException("the instance exceeds " + MAX_UPLOAD + " bytes");
+            }
+            byte data[] = new byte[length];
+            input.readFully(data);
+            if (new File(name).exists())
+                throw new IllegalArgumentException("the name " + name + " is an existing file");
+            Path file = Files.createTempFile("qbfpt-service", null);
+            try {
+                Files.write(file, data);
+                Instance instance = new Instance(new QBFPT(file.toString()), Long.MIN_VALUE);
+                synchronized (uploads) {
+                    uploads.put(name, instance);
+                }
+                send("OK " + name + " " + instance.A.length);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        private void solve(String words[], String line) throws IOException {
+            String name = words[1];
+            Instance uploaded;
+            synchronized (uploads) {
+                uploaded = uploads.get(name);
+            }
+            final Instance instance = uploaded != null ? uploaded : load(name);
+            long budget = Campaign.parseDuration(words[2]);
+            long seed = Long.parseLong(words[3]);
+            String options = line.trim().split("\\s+", 5).length == 5 ? line.trim().split("\\s+", 5)[4] : "";
+            final int id = nextId.incrementAndGet();
+            final Job job = new Job(name, new Variant("job" + id, options), seed, budget);
+            synchronized (jobs) {
+                jobs.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        running.incrementAndGet();
+                        try {
+                            job.run(new QBFPT_Inverse(instance.A, instance.conflicts), new SearchListener() {
+                                @Override
+                                public void bestImproved(IntSolution bestSol, long elapsed) {
+                                    send("BEST " + id + " " + format(-bestSol.cost) + " " + elapsed);
+                                }
+                            });
+                        } finally {
+                            running.decrementAndGet();
+                            finished.incrementAndGet();
+                        }
+                        if (job.solution != null) {
+                            StringBuilder sb = new StringBuilder("RESULT " + id + " " + format(-job.solution.cost) + " "
+                                    + format(job.bound) + " " + job.time + " " + job.solution.size());
+                            for (int k = 0; k < job.solution.size(); k++)
+                                sb.append(' ').append(job.solution.get(k));
+                            send(sb.toString());
+                        } else {
+                            send("FAILED " + id + " " + job.error);
+                        }
+                    }
+                }));
+            }
+            send("QUEUED " + id);
+        }
+
+        /**
+         * Sends a line to the client; a client that is gone is detected by
+         * the session when it reads its next command.
+         */
+        private void send(String line) {
+            synchronized (this) {
+                try {
+                    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } catch (IOException e) {
+                    // the client is gone
+                }
+            }
+        }
+
+    }
+
+    private int cacheSize() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        synchronized (uploads) {
+            return size + uploads.size();
+        }
+    }
+
+    /**
+     * Reads a line terminated by a newline, without reading beyond it.
+     *
+     * @return The line, or null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n')
+            if (b != '\r')
+                buffer.write(b);
+        if (b < 0 && buffer.size() == 0)
+            return null;
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    /**
+     * Runs the service on the port given as first argument (default 7070),
+     * with the number of threads and the capacity of the queue as optional
+     * next arguments.
+     */
+    public static void main(String[] args) throws IOException {
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        TS_QBFPT.verbose = false;
+        SolverService service = new SolverService(port, threads, capacity);
+        System.out.println("Solver service listening on localhost:" + service.getPort() + ", " + threads + " threads");
+        service.run();
+
+    }
+
+}
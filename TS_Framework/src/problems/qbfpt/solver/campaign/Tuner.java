@@ -0,0 +1,412 @@
+package problems.qbfpt.solver.campaign;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import problems.qbfpt.solver.campaign.Campaign.Job;
+import problems.qbfpt.solvers.TS_QBFPT;
+
+/**
+ * Racing tuner of the {@link Variant} options (F-Race, Birattari et al.,
+ * 2002). Candidate configurations are sampled from a parameter space and
+ * raced on a training set: at every stage all the surviving candidates solve
+ * the same instance with the same seed, in parallel and with a short budget,
+ * and once enough stages were run, the candidates whose ranks are
+ * significantly worse than the best one (Friedman test followed by the
+ * Conover post-hoc comparisons) are dropped. The race ends when a single
+ * candidate is left or the training set is exhausted, and the best surviving
+ * configuration is printed as a variant line for a {@link Campaign}.
+ *
+ * A race is described by a properties file:
+ *
+ * <pre>
+ * instances = ../instances/qbf060, ../instances/qbf080, ../instances/qbf100
+ * seeds = 0-9
+ * budget = 5s
+ * threads = 8
+ * candidates = 40
+ * firstTest = 5
+ * significance = 0.05
+ * seed = 0
+ * fixed = pruned
+ * param.tenure = 5:40
+ * param.alpha = 0.0:0.2
+ * param.bestImproving = flag
+ * param.restart = flag
+ * param.maxAge = 20:100
+ * param.restartStep = 0.1:0.4
+ * variant.standard = tenure=10
+ * </pre>
+ *
+ * Every stage is a pair of an instance and a seed, taken in random order.
+ * A parameter is sampled uniformly from an integer range (a:b), a real range
+ * (with a decimal point), a list of values separated by | or, for a flag,
+ * true or false. The options in fixed are appended to every sampled
+ * candidate, and every property variant.name adds a candidate of its own,
+ * such as the configurations tuned by hand. A failed run counts as the worst
+ * result of its stage.
+ */
+public class Tuner {
+
+    /**
+     * A candidate configuration and its results.
+     */
+    private static class Candidate {
+
+        final Variant variant;
+        final List<Double> costs = new ArrayList<Double>();
+        double rankSum;
+
+        Candidate(Variant variant) {
+            this.variant = variant;
+        }
+
+    }
+
+    private final List<String> instances = new ArrayList<String>();
+    private final List<Long> seeds = new ArrayList<Long>();
+    private final long budget;
+    private final int threads;
+    private final int firstTest;
+    private final double significance;
+    private final Random rng;
+    private final List<Candidate> candidates = new ArrayList<Candidate>();
+
+    /**
+     * Constructor for the Tuner class, which samples the candidates.
+     *
+     * @param props
+     *            The description of the race.
+     * @param base
+     *            The directory against which relative paths are resolved.
+     * @throws IllegalArgumentException
+     *             if the description is incomplete or malformed.
+     */
+    public Tuner(Properties props, File base) {
+
+        for (String s : Campaign.list(props, "instances"))
+            instances.add(Campaign.resolve(base, s).getPath());
+        for (String s : Campaign.list(props, "seeds")) {
+            int dash = s.indexOf('-', 1);
+            if (dash < 0) {
+                seeds.add(Long.parseLong(s));
+            } else {
+                long from = Long.parseLong(s.substring(0, dash).trim());
+                long to = Long.parseLong(s.substring(dash + 1).trim());
+                for (long seed = from; seed <= to; seed++)
+                    seeds.add(seed);
+            }
+        }
+        this.budget = Campaign.parseDuration(props.getProperty("budget", "5s").trim());
+        String t = props.getProperty("threads", "").trim();
+        int n = t.isEmpty() ? 0 : Integer.parseInt(t);
+        this.threads = n > 0 ? n : Runtime.getRuntime().availableProcessors();
+        this.firstTest = Integer.parseInt(props.getProperty("firstTest", "5").trim());
+        this.significance = Double.parseDouble(props.getProperty("significance", "0.05").trim());
+        this.rng = new Random(Long.parseLong(props.getProperty("seed", "0").trim()));
+
+        for (String key : new TreeSet<String>(props.stringPropertyNames()))
+            if (key.startsWith("variant."))
+                candidates.add(new Candidate(new Variant(key.substring("variant.".length()), props.getProperty(key))));
+        List<String> params = new ArrayList<String>();
+        for (String key : new TreeSet<String>(props.stringPropertyNames()))
+            if (key.startsWith("param."))
+                params.add(key);
+        int count = Integer.parseInt(props.getProperty("candidates", params.isEmpty() ? "0" : "20").trim());
+        String fixed = props.getProperty("fixed", "").trim();
+        for (int c = 0; c < count; c++) {
+            StringBuilder spec = new StringBuilder();
+            for (String key : params)
+                spec.append(sample(key.substring("param.".length()), props.getProperty(key).trim())).append(' ');
+            candidates.add(new Candidate(new Variant("c" + c, spec.append(fixed).toString())));
+        }
+        if (candidates.size() < 2)
+            throw new IllegalArgumentException("the race needs at least two candidates");
+    }
+
+    /**
+     * Reads a race file.
+     *
+     * @param filename
+     *            The race file.
+     * @return The tuner.
+     * @throws IOException
+     *             necessary for I/O operations.
+     */
+    public static Tuner read(String filename) throws IOException {
+        Properties props = new Properties();
+        try (Reader in = new FileReader(filename)) {
+            props.load(in);
+        }
+        return new Tuner(props, new File(filename).getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Samples the value of an option.
+     */
+    private String sample(String option, String domain) {
+        if (domain.equals("flag"))
+            return rng.nextBoolean() ? option : option + "=false";
+        if (domain.indexOf('|') >= 0) {
+            String values[] = domain.split("\\|");
+            return option + "=" + values[rng.nextInt(values.length)].trim();
+        }
+        String bounds[] = domain.split(":");
+        if (bounds.length != 2)
+            throw new IllegalArgumentException("malformed domain " + domain + " of " + option);
+        if (domain.indexOf('.') >= 0) {
+            double lo = Double.parseDouble(bounds[0]), hi = Double.parseDouble(bounds[1]);
+            return option + "=" + (Math.rint((lo + rng.nextDouble() * (hi - lo)) * 1000) / 1000);
+        }
+        int lo = Integer.parseInt(bounds[0].trim()), hi = Integer.parseInt(bounds[1].trim());
+        return option + "=" + (lo + rng.nextInt(hi - lo + 1));
+    }
+
+    /**
+     * Runs the race.
+     *
+     * @return The best surviving variant.
+     * @throws InterruptedException
+     *             if the race is interrupted.
+     */
+    public Variant run() throws InterruptedException {
+
+        List<long[]> stages = new ArrayList<long[]>();
+        for (int i = 0; i < instances.size(); i++)
+            for (long seed : seeds)
+                stages.add(new long[] { i, seed });
+        Collections.shuffle(stages, rng);
+
+        List<Candidate> alive = new ArrayList<Candidate>(candidates);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int s = 0; s < stages.size() && alive.size() > 1; s++) {
+                String instance = instances.get((int) stages.get(s)[0]);
+                long seed = stages.get(s)[1];
+                List<Job> jobs = new ArrayList<Job>();
+                List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (Candidate c : alive) {
+                    final Job job = new Job(instance, c.variant, seed, budget);
+                    jobs.add(job);
+                    futures.add(pool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            job.run();
+                        }
+                    }));
+                }
+                for (Future<?> f : futures)
+                    f.get();
+                for (int j = 0; j < alive.size(); j++) {
+                    Job job = jobs.get(j);
+                    if (job.error != null)
+                        System.out.println("    " + job.variant.name + " failed: " + job.error);
+                    alive.get(j).costs.add(job.solution == null ? Double.POSITIVE_INFINITY : job.solution.cost);
+                }
+
+                int before = alive.size();
+                if (s + 1 >= firstTest)
+                    alive = race(alive);
+                System.out.println("Stage " + (s + 1) + "/" + stages.size() + " " + instance + " seed=" + seed + ": "
+                        + alive.size() + " candidates" + (alive.size() < before ? " (" + (before - alive.size())
+                                + " dropped)" : ""));
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
+        }
+
+        rank(alive);
+        Collections.sort(alive, (a, b) -> Double.compare(a.rankSum, b.rankSum));
+        int b = alive.get(0).costs.size();
+        System.out.println("Survivors after " + b + " stages:");
+        for (Candidate c : alive) {
+            double mean = 0.0;
+            for (double cost : c.costs)
+                mean -= cost;
+            System.out.println("    " + c.variant + " mean rank=" + c.rankSum / b + " mean value=" + mean / b);
+        }
+        return alive.get(0).variant;
+    }
+
+    /**
+     * Ranks the candidates within every stage, the lowest cost ranked first
+     * and ties given the average rank, and stores the rank sums.
+     *
+     * @return The sum of the squared ranks.
+     */
+    private static double rank(List<Candidate> alive) {
+        int k = alive.size(), b = alive.get(0).costs.size();
+        double squares = 0.0;
+        for (Candidate c : alive)
+            c.rankSum = 0.0;
+        for (int s = 0; s < b; s++) {
+            for (int j = 0; j < k; j++) {
+                double cost = alive.get(j).costs.get(s);
+                int less = 0, equal = 0;
+                for (Candidate c : alive) {
+                    if (c.costs.get(s) < cost)
+                        less++;
+                    else if (c.costs.get(s).doubleValue() == cost)
+                        equal++;
+                }
+                double r = less + (equal + 1) / 2.0;
+                alive.get(j).rankSum += r;
+                squares += r * r;
+            }
+        }
+        return squares;
+    }
+
+    /**
+     * Friedman test over the stages run so far and, if the candidates differ,
+     * Conover post-hoc comparisons with the best one.
+     *
+     * @return The candidates that are not significantly worse than the best.
+     */
+    private List<Candidate> race(List<Candidate> alive) {
+        int k = alive.size(), b = alive.get(0).costs.size();
+        double A = rank(alive);
+        double C = b * k * (k + 1) * (k + 1) / 4.0;
+        if (A - C <= 1e-12)
+            return alive;
+        double spread = 0.0, best = Double.POSITIVE_INFINITY;
+        for (Candidate c : alive) {
+            spread += (c.rankSum - b * (k + 1) / 2.0) * (c.rankSum - b * (k + 1) / 2.0);
+            best = Math.min(best, c.rankSum);
+        }
+        double T = (k - 1) * spread / (A - C);
+        if (chiSquareSurvival(T, k - 1) >= significance)
+            return alive;
+
+        int df = (b - 1) * (k - 1);
+        double critical = tQuantile(1 - significance / 2, df)
+                * Math.sqrt(2 * b * (A - C) / df * (1 - T / (b * (k - 1))));
+        List<Candidate> survivors = new ArrayList<Candidate>();
+        for (Candidate c : alive)
+            if (c.rankSum - best <= critical)
+                survivors.add(c);
+        return survivors;
+    }
+
+    /**
+     * @return The probability that a chi-square variable with df degrees of
+     *         freedom exceeds x, the regularized upper incomplete gamma
+     *         function Q(df/2, x/2).
+     */
+    static double chiSquareSurvival(double x, int df) {
+        double a = df / 2.0, z = x / 2.0;
+        if (z <= 0)
+            return 1.0;
+        double lnPrefix = a * Math.log(z) - z - lnGamma(a);
+        if (z < a + 1) {
+            /* series of the lower function */
+            double term = 1.0 / a, sum = term;
+            for (int n = 1; n < 500 && Math.abs(term) > Math.abs(sum) * 1e-15; n++) {
+                term *= z / (a + n);
+                sum += term;
+            }
+            return 1.0 - sum * Math.exp(lnPrefix);
+        }
+        /* continued fraction of the upper function (modified Lentz) */
+        double bb = z + 1 - a, c = 1e300, d = 1 / bb, h = d;
+        for (int n = 1; n < 500; n++) {
+            double an = -n * (n - a);
+            bb += 2;
+            d = an * d + bb;
+            d = Math.abs(d) < 1e-300 ? 1e-300 : d;
+            c = bb + an / c;
+            c = Math.abs(c) < 1e-300 ? 1e-300 : c;
+            d = 1 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-15)
+                break;
+        }
+        return Math.exp(lnPrefix) * h;
+    }
+
+    /**
+     * Lanczos approximation of the logarithm of the gamma function.
+     */
+    private static double lnGamma(double x) {
+        double coef[] = { 76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155,
+                0.1208650973866179e-2, -0.5395239384953e-5 };
+        double y = x, tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double ser = 1.000000000190015;
+        for (double c : coef)
+            ser += c / ++y;
+        return -tmp + Math.log(2.5066282746310005 * ser / x);
+    }
+
+    /**
+     * @return The p quantile of the Student t distribution with df degrees
+     *         of freedom, from the normal quantile by the Cornish-Fisher
+     *         expansion.
+     */
+    static double tQuantile(double p, int df) {
+        double z = normalQuantile(p), z3 = z * z * z, z5 = z3 * z * z;
+        return z + (z3 + z) / (4.0 * df) + (5 * z5 + 16 * z3 + 3 * z) / (96.0 * df * df);
+    }
+
+    /**
+     * @return The p quantile of the standard normal distribution, by
+     *         bisection of its distribution function.
+     */
+    static double normalQuantile(double p) {
+        double lo = -10, hi = 10;
+        for (int it = 0; it < 100; it++) {
+            double mid = (lo + hi) / 2;
+            if (0.5 * erfc(-mid / Math.sqrt(2)) < p)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        return (lo + hi) / 2;
+    }
+
+    /**
+     * Complementary error function, with a relative error below 1.2e-7
+     * (Numerical Recipes, erfcc).
+     */
+    private static double erfc(double x) {
+        double z = Math.abs(x), t = 1 / (1 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2 - r;
+    }
+
+    /**
+     * Runs the race described by the file given as argument.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length != 1) {
+            System.err.println("usage: Tuner <race file>");
+            System.exit(2);
+        }
+        TS_QBFPT.verbose = false;
+        long startTime = System.currentTimeMillis();
+        Variant best = read(args[0]).run();
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("variant.tuned = " + best.spec);
+        System.out.println("Time = " + (double) totalTime / (double) 1000 + " seg");
+
+    }
+
+}
@@ -0,0 +1,221 @@
+package problems.qbfpt.solver.campaign;
+
+import java.io.IOException;
+
+import problems.qbfpt.QBFPT_Inverse;
+import problems.qbfpt.solvers.TS_QBFPT;
+
+/**
+ * A named configuration of the {@link TS_QBFPT} solver used in a
+ * {@link Campaign}. A variant is described by a list of options separated by
+ * spaces, each one a flag or a key=value pair:
+ *
+ * <pre>
+ * tenure=10              the Tabu tenure (default 10)
+ * alpha=0.05             the greediness of the construction (default 0)
+ * bestImproving          best-improving instead of first-improving moves
+ * powerMoves             intensification by double insertions
+ * restart                intensification by restarts
+ * maxAge=50              the age of an old element of the long-term memory
+ * restartStep=0.2        the fraction of old elements that starts a restart
+ * powerMoveMin=0.2       the fraction of old elements that starts power moves
+ * reactive               reactive tenure with the bounds 5, max(20, n/2)
+ *                        and a stretch of 2n iterations
+ * reactive=5:40:400      reactive tenure with the given min, max and stretch
+ * relinking=10:5:500     path relinking with the given pool size, minimum
+ *                        distance and interval
+ * pruned=false           full scan of the exchange neighborhood
+ * unblock=false          no exchanges that unblock candidates
+ * exact=20               exact enumeration of 20 variables when an
+ *                        intensification (restart or powerMoves) starts
+ * reduce                 search the instance reduced by persistencies
+ *                        and dominance (see QBFReduction)
+ * </pre>
+ */
+public class Variant {
+
+    /**
+     * the name of the variant.
+     */
+    public final String name;
+
+    /**
+     * the options of the variant, as written in the campaign file.
+     */
+    public final String spec;
+
+    private int tenure = 10;
+    private double alpha = 0.0;
+    private boolean bestImproving = false;
+    private boolean powerMoves = false;
+    private boolean restart = false;
+    private int maxAge = 0;
+    private double restartStep = -1;
+    private double powerMoveMin = -1;
+    private boolean reactive = false;
+    private int reactiveParams[] = null;
+    private int relinkingParams[] = null;
+    private boolean pruned = true;
+    private boolean unblock = true;
+    private int exact = 0;
+    private boolean reduce = false;
+
+    /**
+     * Constructor for the Variant class.
+     *
+     * @param name
+     *            The name of the variant.
+     * @param spec
+     *            The options of the variant.
+     * @throws IllegalArgumentException
+     *             if an option is unknown or malformed.
+     */
+    public Variant(String name, String spec) {
+        this.name = name;
+        this.spec = spec.trim();
+        for (String option : this.spec.split("\\s+")) {
+            if (option.isEmpty())
+                continue;
+            int eq = option.indexOf('=');
+            String key = eq < 0 ? option : option.substring(0, eq);
+            String value = eq < 0 ? null : option.substring(eq + 1);
+            try {
+                switch (key) {
+                case "tenure":
+                    tenure = Integer.parseInt(value);
+                    break;
+                case "alpha":
+                    alpha = Double.parseDouble(value);
+                    break;
+                case "bestImproving":
+                    bestImproving = flag(value);
+                    break;
+                case "powerMoves":
+                    powerMoves = flag(value);
+                    break;
+                case "restart":
+                    restart = flag(value);
+                    break;
+                case "maxAge":
+                    maxAge = Integer.parseInt(value);
+                    break;
+                case "restartStep":
+                    restartStep = Double.parseDouble(value);
+                    break;
+                case "powerMoveMin":
+                    powerMoveMin = Double.parseDouble(value);
+                    break;
+                case "reactive":
+                    reactive = value == null || !value.equals("false");
+                    if (value != null && reactive)
+                        reactiveParams = ints(value, 3);
+                    break;
+                case "relinking":
+                    relinkingParams = ints(value, 3);
+                    break;
+                case "pruned":
+                    pruned = flag(value);
+                    break;
+                case "unblock":
+                    unblock = flag(value);
+                    break;
+                case "exact":
+                    exact = Integer.parseInt(value);
+                    break;
+                case "reduce":
+                    reduce = flag(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + key);
+                }
+            } catch (NullPointerException | NumberFormatException e) {
+                throw new IllegalArgumentException("malformed option " + option + " of variant " + name);
+            }
+        }
+    }
+
+    /**
+     * Creates a solver configured by this variant.
+     *
+     * @param objFunction
+     *            The inverse QBFPT of the instance, owned by the new solver.
+     * @param budget
+     *            The time limit, in milliseconds.
+     * @param seed
+     *            The seed of the solver.
+     * @return The solver.
+     */
+    public TS_QBFPT create(QBFPT_Inverse objFunction, long budget, long seed) {
+        int n = objFunction.getDomainSize();
+        TS_QBFPT ts = new TS_QBFPT(tenure, budget, objFunction, bestImproving, powerMoves, restart);
+        ts.setSeed(seed);
+        ts.setAlpha(alpha);
+        ts.setPrunedExchange(pruned);
+        ts.setUnblockSwaps(unblock);
+        if (maxAge > 0)
+            ts.setMaxAge(maxAge);
+        if (exact > 0)
+            ts.setExactIntensification(exact);
+        if (restartStep >= 0)
+            ts.setRestartStep(restartStep);
+        if (powerMoveMin >= 0)
+            ts.setPowerMoveMin(powerMoveMin);
+        if (reactive) {
+            if (reactiveParams != null)
+                ts.setReactiveTenure(reactiveParams[0], reactiveParams[1], reactiveParams[2]);
+            else
+                ts.setReactiveTenure(5, Math.max(20, n / 2), 2 * n);
+        }
+        if (relinkingParams != null)
+            ts.setPathRelinking(relinkingParams[0], relinkingParams[1], relinkingParams[2]);
+        return ts;
+    }
+
+    /**
+     * Creates a solver configured by this variant for an instance file.
+     *
+     * @param filename
+     *            The instance file.
+     * @param budget
+     *            The time limit, in milliseconds.
+     * @param seed
+     *            The seed of the solver.
+     * @return The solver.
+     * @throws IOException
+     *             necessary for I/O operations.
+     */
+    public TS_QBFPT create(String filename, long budget, long seed) throws IOException {
+        return create(new QBFPT_Inverse(filename), budget, seed);
+    }
+
+    /**
+     * @return true if the solver searches the reduced instance.
+     */
+    public boolean reduces() {
+        return reduce;
+    }
+
+    @Override
+    public String toString() {
+        return name + " [" + spec + "]";
+    }
+
+    private static boolean flag(String value) {
+        if (value == null || value.equals("true"))
+            return true;
+        if (value.equals("false"))
+            return false;
+        throw new NumberFormatException(value);
+    }
+
+    private static int[] ints(String value, int count) {
+        String parts[] = value.split(":");
+        if (parts.length != count)
+            throw new NumberFormatException(value);
+        int result[] = new int[count];
+        for (int k = 0; k < count; k++)
+            result[k] = Integer.parseInt(parts[k]);
+        return result;
+    }
+
+}
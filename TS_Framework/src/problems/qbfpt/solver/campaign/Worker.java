@@ -0,0 +1,193 @@
+package problems.qbfpt.solver.campaign;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import metaheuristics.tabusearch.SearchListener;
+import problems.qbfpt.solver.campaign.Campaign.Job;
+import problems.qbfpt.solvers.TS_QBFPT;
+import solutions.IntSolution;
+
+/**
+ * A worker process of a {@link Coordinator}. It opens one connection per
+ * slot, and every connection runs the jobs sent by the coordinator one at a
+ * time, streaming back the improvements of the best solution (at most one
+ * per {@link #PROGRESS_INTERVAL}) and the result. The instance files are
+ * received from the coordinator, so the worker needs no shared file system.
+ */
+public class Worker implements Runnable {
+
+    /**
+     * the minimum time, in milliseconds, between two progress messages.
+     */
+    private static final long PROGRESS_INTERVAL = 1000;
+
+    /**
+     * the number of times, one second apart, the worker tries to reach the
+     * coordinator before giving up.
+     */
+    private static final int CONNECT_ATTEMPTS = 30;
+
+    private final String host;
+    private final int port;
+    private final String name;
+
+    /**
+     * Constructor for the Worker class.
+     *
+     * @param host
+     *            The host of the coordinator.
+     * @param port
+     *            The port of the coordinator.
+     * @param name
+     *            The name by which the worker is known to the coordinator.
+     */
+    public Worker(String host, int port, String name) {
+        this.host = host;
+        this.port = port;
+        this.name = name;
+    }
+
+    /**
+     * Connects to the coordinator and runs jobs until it says goodbye or the
+     * connection is lost.
+     */
+    @Override
+    public void run() {
+        Socket socket = null;
+        for (int attempt = 0; socket == null; attempt++) {
+            try {
+                socket = new Socket(host, port);
+            } catch (IOException e) {
+                if (attempt + 1 >= CONNECT_ATTEMPTS) {
+                    System.err.println("Worker " + name + " could not reach " + host + ":" + port + ": " + e);
+                    return;
+                }
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+        try {
+            session(socket);
+        } catch (IOException e) {
+            System.err.println("Worker " + name + " lost the coordinator: " + e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to do with this connection
+            }
+        }
+    }
+
+    private void session(Socket socket) throws IOException {
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        Map<String, Path> instances = new HashMap<String, Path>();
+        Path dir = Files.createTempDirectory("qbfpt-worker");
+        dir.toFile().deleteOnExit();
+
+        out.writeUTF(Coordinator.HELLO);
+        out.writeUTF(name);
+        out.flush();
+        while (true) {
+            String type = in.readUTF();
+            if (type.equals(Coordinator.BYE)) {
+                return;
+            } else if (type.equals(Coordinator.INSTANCE)) {
+                String instance = in.readUTF();
+                byte data[] = new byte[in.readInt()];
+                in.readFully(data);
+                Path file = dir.resolve("instance" + instances.size());
+                Files.write(file, data);
+                file.toFile().deleteOnExit();
+                instances.put(instance, file);
+            } else if (type.equals(Coordinator.JOB)) {
+                final int id = in.readInt();
+                Path file = instances.get(in.readUTF());
+                Variant variant = new Variant(in.readUTF(), in.readUTF());
+                long seed = in.readLong();
+                long budget = in.readLong();
+                if (file == null)
+                    throw new IOException("protocol error");
+                Job job = new Job(file.toString(), variant, seed, budget);
+                job.run(new SearchListener() {
+                    private long last = -PROGRESS_INTERVAL;
+
+                    @Override
+                    public void bestImproved(IntSolution bestSol, long elapsed) {
+                        if (elapsed - last < PROGRESS_INTERVAL)
+                            return;
+                        last = elapsed;
+                        try {
+                            out.writeUTF(Coordinator.BEST);
+                            out.writeInt(id);
+                            out.writeDouble(bestSol.cost);
+                            out.writeLong(elapsed);
+                            out.flush();
+                        } catch (IOException e) {
+                            // the loss is detected when the result is sent
+                        }
+                    }
+                });
+                if (job.solution != null) {
+                    out.writeUTF(Coordinator.RESULT);
+                    out.writeInt(id);
+                    out.writeDouble(job.solution.cost);
+                    out.writeDouble(job.bound);
+                    out.writeLong(job.time);
+                    out.writeInt(job.solution.getDomainSize());
+                    out.writeInt(job.solution.size());
+                    for (int k = 0; k < job.solution.size(); k++)
+                        out.writeInt(job.solution.get(k));
+                } else {
+                    out.writeUTF(Coordinator.FAILED);
+                    out.writeInt(id);
+                    out.writeLong(job.time);
+                    out.writeUTF(job.error);
+                }
+                out.flush();
+            } else {
+                throw new IOException("protocol error");
+            }
+        }
+    }
+
+    /**
+     * Connects to the coordinator at the host and port given as arguments,
+     * with the number of concurrent jobs as an optional third argument
+     * (default 1).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length < 2) {
+            System.err.println("usage: Worker <host> <port> [slots]");
+            System.exit(2);
+        }
+        int slots = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        TS_QBFPT.verbose = false;
+        String name = InetAddress.getLocalHost().getHostName();
+        Thread threads[] = new Thread[slots];
+        for (int s = 0; s < slots; s++) {
+            threads[s] = new Thread(new Worker(args[0], Integer.parseInt(args[1]), name + "/" + s));
+            threads[s].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package problems.qbfpt.solver.multithread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import metaheuristics.tabusearch.IslandModel;
+import problems.qbfpt.QBFPT_Inverse;
+import problems.qbfpt.solvers.TS_QBFPT;
+import solutions.IntSolution;
+
+/**
+ * The variants of {@link TS_QBFPT_multithreaded} run as the islands of an
+ * {@link IslandModel}, so they share their best solutions while they search.
+ */
+public class TS_QBFPT_islands {
+
+    /**
+     * Runs the islands over the instance given as first argument, with the
+     * optional time limit in milliseconds, topology, migration interval and
+     * acceptance policy as the next arguments.
+     */
+    public static void main(String[] args) throws IOException {
+
+        String instance = args.length > 0 ? args[0] : "instances/qbf400";
+        long maxTime = args.length > 1 ? Long.parseLong(args[1]) : 30 * 60 * 1000;
+        IslandModel.Topology topology = args.length > 2 ? IslandModel.Topology.valueOf(args[2])
+                : IslandModel.Topology.RING;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        IslandModel.Acceptance acceptance = args.length > 4 ? IslandModel.Acceptance.valueOf(args[4])
+                : IslandModel.Acceptance.BETTER_THAN_INCUMBENT;
+
+        TS_QBFPT.verbose = false;
+        List<TS_QBFPT> islands = new ArrayList<TS_QBFPT>();
+        islands.add(new TS_QBFPT(10, maxTime, instance, false, false, false));
+        islands.add(new TS_QBFPT(10, maxTime, instance, true, false, false));
+        islands.add(new TS_QBFPT(10, maxTime, instance, false, true, false));
+        islands.add(new TS_QBFPT(10, maxTime, instance, false, false, true));
+        QBFPT_Inverse objFunction = new QBFPT_Inverse(instance);
+        int n = objFunction.getDomainSize();
+        TS_QBFPT reactive = new TS_QBFPT(10, maxTime, objFunction, false, false, false);
+        reactive.setReactiveTenure(5, Math.max(20, n / 2), 2 * n);
+        islands.add(reactive);
+        for (int i = 0; i < islands.size(); i++)
+            islands.get(i).setSeed(i);
+
+        long startTime = System.currentTimeMillis();
+        IslandModel model = new IslandModel(islands, topology, interval, acceptance);
+        IntSolution bestSol = model.solve();
+        long totalTime = System.currentTimeMillis() - startTime;
+
+        for (int i = 0; i < islands.size(); i++) {
+            int migrations[] = model.getMigrations(i);
+            System.out.println("Island " + i + ": sent=" + migrations[0] + " received=" + migrations[1]
+                    + " accepted=" + migrations[2]);
+        }
+        System.out.println("maxVal = " + bestSol);
+        System.out.println("Time = " + (double) totalTime / (double) 1000 + " seg");
+
+    }
+
+}
@@ -0,0 +1,413 @@
+package problems.qbfpt.solver.multithread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import problems.ConflictConstraints;
+import problems.qbfpt.QBFPT_Inverse;
+import problems.qbfpt.solvers.TS_QBFPT;
+import solutions.IntSolution;
+
+/**
+ * Large neighborhood search for instances too big for a Tabu Search over all
+ * the variables. Every round, the variables are split into disjoint blocks;
+ * for each block the other variables are fixed at their value in the
+ * incumbent solution, which turns their couplings with the block into linear
+ * terms and the prohibited triples they complete into conflicts of the
+ * block. The subproblems of the blocks are solved concurrently by small
+ * {@link TS_QBFPT} searches started from the incumbent solution, and their
+ * improvements are merged back one block at a time, each one kept only if it
+ * still improves the incumbent solution and completes no triple.
+ *
+ * The sum of the couplings of every variable with the variables at one is
+ * kept up to date, so a subproblem is extracted in time quadratic in the
+ * size of the block, and a flip is applied in time linear in the size of the
+ * instance.
+ */
+public class TS_QBFPT_lns {
+
+    public static boolean verbose = true;
+
+    /**
+     * Tolerance of the comparisons between values.
+     */
+    private static final double EPS = 1e-9;
+
+    private final QBFPT_Inverse objFunction;
+    private final double[][] A;
+    private final ConflictConstraints conflicts;
+    private final int size;
+    private final long maxTime;
+
+    private int blockSize = 30;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long subTime = 100;
+    private int tenure = 10;
+    private Random rng = new Random(0);
+
+    /**
+     * the incumbent solution, as a binary vector, and its value.
+     */
+    private final boolean[] x;
+    private double value;
+
+    /**
+     * for each variable i, the sum of A[i][j] + A[j][i] over the variables j
+     * at one, j != i.
+     */
+    private final double[] field;
+
+    /**
+     * the variables in random order, consumed block by block.
+     */
+    private final int[] order;
+    private int cursor;
+
+    private long rounds = 0, merged = 0;
+
+    /**
+     * Constructor for the TS_QBFPT_lns class.
+     *
+     * @param objFunction
+     *            The inverse QBFPT of the instance.
+     * @param maxTime
+     *            The time limit, in milliseconds.
+     */
+    public TS_QBFPT_lns(QBFPT_Inverse objFunction, long maxTime) {
+        this.objFunction = objFunction;
+        this.A = objFunction.A;
+        this.conflicts = objFunction.conflicts;
+        this.size = objFunction.getDomainSize();
+        this.maxTime = maxTime;
+        this.x = new boolean[size];
+        this.field = new double[size];
+        this.order = new int[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        this.cursor = size;
+    }
+
+    /**
+     * Sets the number of variables of a block. The default is 30, small
+     * enough for the branch and bound of {@link TS_QBFPT} to prove most
+     * subproblems optimal well within their time limit.
+     *
+     * @param blockSize
+     *            The number of variables of a block.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("the block size must be positive");
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Sets the number of blocks optimized concurrently in each round. The
+     * default is the number of available processors.
+     *
+     * @param threads
+     *            The number of threads.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("the number of threads must be positive");
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the time limit of the search of each subproblem, 100 milliseconds
+     * by default.
+     *
+     * @param subTime
+     *            The time limit, in milliseconds.
+     */
+    public void setSubTime(long subTime) {
+        this.subTime = subTime;
+    }
+
+    /**
+     * Sets the Tabu tenure of the searches of the subproblems.
+     *
+     * @param tenure
+     *            The Tabu tenure.
+     */
+    public void setTenure(int tenure) {
+        this.tenure = tenure;
+    }
+
+    /**
+     * Sets the seed of the choice of the blocks and of the searches of the
+     * subproblems.
+     *
+     * @param seed
+     *            The seed.
+     */
+    public void setSeed(long seed) {
+        this.rng = new Random(seed);
+    }
+
+    /**
+     * Runs the search from the empty solution.
+     *
+     * @return The best solution found, with the cost of the inverse QBFPT.
+     */
+    public IntSolution solve() {
+        return solve(new IntSolution(size));
+    }
+
+    /**
+     * Runs the search from a feasible solution.
+     *
+     * @param initialSol
+     *            The solution from which the search starts.
+     * @return The best solution found, with the cost of the inverse QBFPT.
+     */
+    public IntSolution solve(IntSolution initialSol) {
+
+        long startTime = System.currentTimeMillis();
+        load(initialSol);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long elapsed;
+            while ((elapsed = System.currentTimeMillis() - startTime) < maxTime) {
+                final long budget = Math.min(subTime, maxTime - elapsed);
+                List<int[]> blocks = selectBlocks();
+                List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+                for (final int[] block : blocks) {
+                    final long seed = rng.nextLong();
+                    futures.add(pool.submit(new Callable<int[]>() {
+                        @Override
+                        public int[] call() {
+                            return optimize(block, budget, seed);
+                        }
+                    }));
+                }
+
+                /* Every subproblem reads the incumbent, so merge only at the end of the round */
+                List<int[]> results = new ArrayList<int[]>();
+                for (Future<int[]> f : futures)
+                    results.add(f.get());
+                double before = value;
+                for (int b = 0; b < blocks.size(); b++)
+                    if (results.get(b) != null && merge(blocks.get(b), results.get(b)))
+                        merged++;
+                rounds++;
+                if (verbose && value > before + EPS)
+                    System.out.println("(Iter. " + ((double) (System.currentTimeMillis() - startTime) / (double) 1000)
+                            + ") BestSol = " + value);
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
+        }
+
+        IntSolution bestSol = new IntSolution(size);
+        for (int i = 0; i < size; i++)
+            if (x[i])
+                bestSol.add(i);
+        objFunction.evaluate(bestSol);
+        return bestSol;
+    }
+
+    /**
+     * Makes a solution the incumbent one.
+     */
+    private void load(IntSolution sol) {
+        Arrays.fill(x, false);
+        Arrays.fill(field, 0.0);
+        value = 0.0;
+        for (int k = 0; k < sol.size(); k++)
+            value += flip(sol.get(k));
+    }
+
+    /**
+     * @return The next disjoint blocks of the random order of the variables,
+     *         at most one per thread.
+     */
+    private List<int[]> selectBlocks() {
+        int m = Math.min(blockSize, size);
+        int count = Math.max(1, Math.min(threads, size / m));
+        // reshuffle only between rounds, so the blocks of a round are disjoint
+        if (cursor + count * m > size) {
+            for (int i = size - 1; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+            cursor = 0;
+        }
+        List<int[]> blocks = new ArrayList<int[]>(count);
+        for (int b = 0; b < count; b++) {
+            int[] block = new int[m];
+            System.arraycopy(order, cursor, block, 0, m);
+            cursor += m;
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    /**
+     * Solves the subproblem of a block, with the other variables fixed at
+     * their value in the incumbent solution.
+     *
+     * @return The values of the variables of the block in the best solution
+     *         found, or null if it does not improve the incumbent solution.
+     */
+    private int[] optimize(int[] block, long budget, long seed) {
+
+        int m = block.length;
+        int[] local = new int[size];
+        Arrays.fill(local, -1);
+        for (int a = 0; a < m; a++)
+            local[block[a]] = a;
+
+        /* Couplings with the fixed variables at one become linear terms */
+        double[][] B = new double[m][m];
+        IntSolution initialSol = new IntSolution(m);
+        for (int a = 0; a < m; a++) {
+            int i = block[a];
+            double linear = A[i][i] + field[i];
+            for (int b = 0; b < m; b++) {
+                int j = block[b];
+                if (b != a && x[j])
+                    linear -= A[i][j] + A[j][i];
+                if (b > a)
+                    B[a][b] = A[i][j] + A[j][i];
+            }
+            B[a][a] = linear;
+            if (x[i])
+                initialSol.add(a);
+        }
+
+        /* Triples whose variables outside the block are all at one */
+        List<int[]> list = new ArrayList<int[]>();
+        boolean[] seen = new boolean[conflicts.getConflictCount()];
+        for (int a = 0; a < m; a++) {
+            for (int k = 0; k < conflicts.degree(block[a]); k++) {
+                int c = conflicts.conflict(block[a], k);
+                if (seen[c])
+                    continue;
+                seen[c] = true;
+                int inside = 0;
+                boolean active = true;
+                for (int p = 0; p < conflicts.arity(c) && active; p++) {
+                    int v = conflicts.variable(c, p);
+                    if (local[v] >= 0)
+                        inside++;
+                    else
+                        active = x[v];
+                }
+                if (!active)
+                    continue;
+                int[] vars = new int[inside];
+                for (int p = 0, q = 0; p < conflicts.arity(c); p++)
+                    if (local[conflicts.variable(c, p)] >= 0)
+                        vars[q++] = local[conflicts.variable(c, p)];
+                list.add(vars);
+            }
+        }
+
+        QBFPT_Inverse sub = new QBFPT_Inverse(B, new ConflictConstraints(m, list));
+        double initialCost = sub.evaluate(new IntSolution(initialSol));
+        TS_QBFPT ts = new TS_QBFPT(tenure, budget, sub, false, false, false);
+        ts.setSeed(seed);
+        IntSolution best = ts.solve(initialSol);
+        if (best.cost >= initialCost - EPS)
+            return null;
+
+        int[] values = new int[m];
+        for (int k = 0; k < best.size(); k++)
+            values[best.get(k)] = 1;
+        return values;
+    }
+
+    /**
+     * Applies the values found for a block, unless they no longer improve
+     * the incumbent solution or complete a triple.
+     *
+     * @return true if the values were applied.
+     */
+    private boolean merge(int[] block, int[] values) {
+        int[] flipped = new int[block.length];
+        int flips = 0;
+        double delta = 0.0;
+        for (int a = 0; a < block.length; a++) {
+            if (x[block[a]] != (values[a] == 1)) {
+                delta += flip(block[a]);
+                flipped[flips++] = block[a];
+            }
+        }
+        boolean feasible = true;
+        for (int k = 0; k < flips && feasible; k++)
+            feasible = !x[flipped[k]] || conflicts.canInsert(flipped[k], x);
+        if (feasible && delta > EPS) {
+            value += delta;
+            return true;
+        }
+        for (int k = flips - 1; k >= 0; k--)
+            flip(flipped[k]);
+        return false;
+    }
+
+    /**
+     * Flips a variable of the incumbent solution, keeping the couplings with
+     * the variables at one up to date.
+     *
+     * @return The variation of the value.
+     */
+    private double flip(int v) {
+        double delta = A[v][v] + field[v];
+        x[v] = !x[v];
+        if (!x[v])
+            delta = -delta;
+        double sign = x[v] ? 1.0 : -1.0;
+        for (int i = 0; i < size; i++)
+            if (i != v)
+                field[i] += sign * (A[i][v] + A[v][i]);
+        return delta;
+    }
+
+    /**
+     * @return The number of rounds and of blocks whose improvement was kept.
+     */
+    public long[] getStats() {
+        return new long[] { rounds, merged };
+    }
+
+    /**
+     * Runs the search over the instance given as first argument, with the
+     * optional time limit in milliseconds, block size and number of threads
+     * as the next arguments.
+     */
+    public static void main(String[] args) throws IOException {
+
+        String instance = args.length > 0 ? args[0] : "instances/qbf400";
+        long maxTime = args.length > 1 ? Long.parseLong(args[1]) : 30 * 60 * 1000;
+
+        TS_QBFPT.verbose = false;
+        long startTime = System.currentTimeMillis();
+        TS_QBFPT_lns lns = new TS_QBFPT_lns(new QBFPT_Inverse(instance), maxTime);
+        if (args.length > 2)
+            lns.setBlockSize(Integer.parseInt(args[2]));
+        if (args.length > 3)
+            lns.setThreads(Integer.parseInt(args[3]));
+        IntSolution bestSol = lns.solve();
+        long totalTime = System.currentTimeMillis() - startTime;
+        long stats[] = lns.getStats();
+        System.out.println("Rounds = " + stats[0] + ", blocks merged = " + stats[1]);
+        System.out.println("maxVal = " + bestSol);
+        System.out.println("Time = " + (double) totalTime / (double) 1000 + " seg");
+
+    }
+
+}
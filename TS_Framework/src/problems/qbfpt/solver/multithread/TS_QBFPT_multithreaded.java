@@ -4,16 +4,16 @@ import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 import problems.qbfpt.solvers.TS_QBFPT;
-import solutions.Solution;
+import solutions.IntSolution;
 
 public class TS_QBFPT_multithreaded extends TS_QBFPT implements Runnable{
 
-	public TS_QBFPT_multithreaded(Integer tenure, Integer iterations, String filename, boolean bstImp, boolean pm,
+	public TS_QBFPT_multithreaded(int tenure, long iterations, String filename, boolean bstImp, boolean pm,
 			boolean rstrt) throws IOException {
 		super(tenure, iterations, filename, bstImp, pm, rstrt);
 		this.done = false;
 		}
-		public Solution<Integer> finalSolution;	
+		public IntSolution finalSolution;	
 		public long totalTime;
 		public Boolean done;
 		public void run() {
@@ -40,25 +40,23 @@ public class TS_QBFPT_multithreaded extends TS_QBFPT implements Runnable{
 				System.out.println("Instancia: "+instances[i]);
 				
 				TS_QBFPT_multithreaded tsPadrao = new TS_QBFPT_multithreaded(10, maxIter, instances[i], false,false,false);
-				TS_QBFPT_multithreaded tsDiffTenure = new TS_QBFPT_multithreaded(15, maxIter, instances[i], false,false,false);
 				TS_QBFPT_multithreaded tsBestImprov = new TS_QBFPT_multithreaded(10, maxIter, instances[i],true,false,false);
 				TS_QBFPT_multithreaded tsIntNeighborhood = new TS_QBFPT_multithreaded(10, maxIter, instances[i], false,true,false);
 				TS_QBFPT_multithreaded tsIntRestart = new TS_QBFPT_multithreaded(10, maxIter, instances[i], false,false,true);
-				TS_QBFPT_multithreaded tsVariableTenure = new TS_QBFPT_multithreaded((int) (sizes[i]*0.2), maxIter, instances[i], false,false,false);
+				TS_QBFPT_multithreaded tsReactiveTenure = new TS_QBFPT_multithreaded(10, maxIter, instances[i], false,false,false);
+				tsReactiveTenure.setReactiveTenure(5, Math.max(20, sizes[i]/2), 2*sizes[i]);
 				
 				Thread tsPadraoThread = new Thread(tsPadrao);
-				Thread tsDiffTenureThread = new Thread(tsDiffTenure);
 				Thread tsBestImprovThread = new Thread(tsBestImprov);
 				Thread tsIntNeighborhoodThread = new Thread(tsIntNeighborhood);
 				Thread tsIntRestartThread = new Thread(tsIntRestart);
-				Thread tsVariableTenureThread = new Thread(tsVariableTenure);
+				Thread tsReactiveTenureThread = new Thread(tsReactiveTenure);
 				
 				tsPadraoThread.start();
-				tsDiffTenureThread.start();
 				tsBestImprovThread.start();
 				tsIntNeighborhoodThread.start();
 				tsIntRestartThread.start();
-				tsVariableTenureThread.start();
+				tsReactiveTenureThread.start();
 				
 				try {
 					TimeUnit.MILLISECONDS.sleep((int)(maxIter * 1.1));
@@ -70,9 +68,6 @@ public class TS_QBFPT_multithreaded extends TS_QBFPT implements Runnable{
 				System.out.println("TS padrao: ");
 				tsPadrao.displaySolution();
 				System.out.println("");
-				System.out.println("TS tenure mudado: ");
-				tsDiffTenure.displaySolution();
-				System.out.println("");
 				System.out.println("TS best improving: ");
 				tsBestImprov.displaySolution();
 				System.out.println("");
@@ -82,8 +77,8 @@ public class TS_QBFPT_multithreaded extends TS_QBFPT implements Runnable{
 				System.out.println("TS restart intensification: ");
 				tsIntRestart.displaySolution();
 				System.out.println("");
-				System.out.println("TS variable tenure: ");
-				tsVariableTenure.displaySolution();
+				System.out.println("TS reactive tenure: ");
+				tsReactiveTenure.displaySolution();
 				System.out.println("");
 				System.out.println("");
 			}
@@ -0,0 +1,67 @@
+package problems.qbfpt.solvers;
+
+import java.io.IOException;
+
+import problems.ConflictConstraints;
+import problems.qbf.GrayCodeSearch;
+import problems.qbf.QBFDeltaCache;
+import problems.qbfpt.QBFPT_Inverse;
+import solutions.IntSolution;
+
+/**
+ * Exact solver for small QBFPT instances, which enumerates every assignment
+ * of the variables with a {@link GrayCodeSearch} started from the empty
+ * solution. It certifies the optima of the instances of up to
+ * {@link GrayCodeSearch#MAX_VARIABLES} variables, such as qbf020, with and
+ * without the prohibited triples.
+ */
+public class Exact_QBFPT {
+
+    /**
+     * Finds an optimal solution.
+     *
+     * @param objFunction
+     *            The inverse QBFPT of the instance.
+     * @param conflicts
+     *            The prohibited tuples, or null to solve the QBF alone.
+     * @return An optimal solution, with the cost of the inverse QBFPT.
+     * @throws IllegalArgumentException
+     *             if the instance has more than
+     *             {@link GrayCodeSearch#MAX_VARIABLES} variables.
+     */
+    public static IntSolution solve(QBFPT_Inverse objFunction, ConflictConstraints conflicts) {
+        int n = objFunction.getDomainSize();
+        QBFDeltaCache cache = new QBFDeltaCache(objFunction.A, -1.0);
+        GrayCodeSearch search = new GrayCodeSearch(cache, conflicts);
+        int vars[] = new int[n];
+        for (int i = 0; i < n; i++)
+            vars[i] = i;
+        IntSolution sol = new IntSolution(n);
+        if (search.search(vars, n)) {
+            int flips = search.getFlips(vars);
+            for (int f = 0; f < flips; f++)
+                sol.add(vars[f]);
+        }
+        objFunction.evaluate(sol);
+        return sol;
+    }
+
+    /**
+     * Solves the instance given as first argument.
+     */
+    public static void main(String[] args) throws IOException {
+
+        String instance = args.length > 0 ? args[0] : "instances/qbf020";
+        QBFPT_Inverse objFunction = new QBFPT_Inverse(instance);
+
+        long startTime = System.currentTimeMillis();
+        IntSolution free = solve(objFunction, null);
+        IntSolution bestSol = solve(objFunction, objFunction.conflicts);
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("QBF maxVal = " + free);
+        System.out.println("QBFPT maxVal = " + bestSol);
+        System.out.println("Time = " + (double) totalTime / (double) 1000 + " seg");
+
+    }
+
+}
@@ -1,15 +1,28 @@
 package problems.qbfpt.solvers;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.function.IntPredicate;
 
-import metaheuristics.tabusearch.AbstractTS;
+import metaheuristics.tabusearch.AbstractIntTS;
+import metaheuristics.tabusearch.ElitePool;
+import metaheuristics.tabusearch.IntTabuList;
+import metaheuristics.tabusearch.LongTermMemory;
+import metaheuristics.tabusearch.RandomScanOrder;
+import metaheuristics.tabusearch.ReactiveTenure;
+import metaheuristics.tabusearch.ZobristHash;
+import problems.ConflictState;
+import problems.qbf.BranchAndBound;
+import problems.qbf.CoefficientUpdates;
+import problems.qbf.ExchangeSearch;
+import problems.qbf.GrayCodeSearch;
+import problems.qbf.PathRelinking;
+import problems.qbf.QBFDeltaCache;
+import problems.qbf.RoofDuality;
 import problems.qbfpt.QBFPT_Inverse;
-import solutions.Solution;
+import solutions.IntSet;
+import solutions.IntSolution;
 
 
 
@@ -21,17 +34,46 @@ import solutions.Solution;
  *
  * @author ccavellucci, fusberti
  */
-public class TS_QBFPT extends AbstractTS<Integer> {
+public class TS_QBFPT extends AbstractIntTS {
+
+    /**
+     * the largest instance on which the branch and bound is enabled by
+     * default.
+     */
+    public static final int EXACT_SIZE = 50;
 
-    private final Integer fake = new Integer(-1);
     private boolean bestImproving = false;
     private boolean powerMoves = false;
     private boolean restart = true;
-    private int age[] = new int[1000];
-    private boolean cantRemove[] = new boolean[1000];
+    private boolean cantRemove[];
+    private LongTermMemory memory;
+    private RandomScanOrder clOrder = new RandomScanOrder();
+    private RandomScanOrder solOrder = new RandomScanOrder();
     private int maxAge = 50;
-    private Double restartStep = 0.2;
-    private Double powerMoveMin = 0.2;
+    private double restartStep = 0.2;
+    private double powerMoveMin = 0.2;
+    private double powerMoveStart = 0.2;
+    private ElitePool elitePool = null;
+    private PathRelinking relinking;
+    private QBFPT_Inverse qbfpt;
+    private QBFDeltaCache cache;
+    private ConflictState conflicts;
+    private boolean conflictsSynced = false;
+    private boolean prunedExchange = true;
+    private ExchangeSearch exchangeSearch;
+    private int ins[], outs[];
+    private boolean unblockSwaps = true;
+    private int freed[];
+    private ZobristHash zobrist;
+    private ReactiveTenure reactive = null;
+    private int relinkInterval;
+    private int stagnation = 0;
+    private double lastBestCost = Double.POSITIVE_INFINITY;
+    private BranchAndBound branchAndBound = null;
+    private final CoefficientUpdates updates = new CoefficientUpdates();
+    private final IntPredicate isTabu = e -> TL.contains(e);
+    private GrayCodeSearch grayCode = null;
+    private int exactVars[];
     /**
      * Constructor for the TS_QBF class. An inverse QBF objective function is
      * passed as argument for the superclass constructor.
@@ -46,14 +88,203 @@ public class TS_QBFPT extends AbstractTS<Integer> {
      * @throws IOException
      *             necessary for I/O operations.
      */
-    public TS_QBFPT(Integer tenure, Integer iterations, String filename, boolean bstImp,boolean pm,boolean rstrt) throws IOException {
-        super(new QBFPT_Inverse(filename), tenure, iterations);
+    public TS_QBFPT(int tenure, long iterations, String filename, boolean bstImp,boolean pm,boolean rstrt) throws IOException {
+        this(tenure, iterations, new QBFPT_Inverse(filename), bstImp, pm, rstrt);
+    }
+
+    /**
+     * Constructor for the TS_QBFPT class with the prohibited tuples read from
+     * a conflict file.
+     *
+     * @param tenure
+     *            The Tabu tenure parameter.
+     * @param iterations
+     *            The number of iterations which the TS will be executed.
+     * @param filename
+     *            Name of the file for which the objective function parameters
+     *            should be read.
+     * @param conflictsFilename
+     *            Name of the conflict file (see
+     *            {@link problems.ConflictConstraints}).
+     * @throws IOException
+     *             necessary for I/O operations.
+     */
+    public TS_QBFPT(int tenure, long iterations, String filename, String conflictsFilename, boolean bstImp,boolean pm,boolean rstrt) throws IOException {
+        this(tenure, iterations, new QBFPT_Inverse(filename, conflictsFilename), bstImp, pm, rstrt);
+    }
+
+    /**
+     * Constructor for the TS_QBFPT class over an objective function already
+     * loaded.
+     *
+     * @param tenure
+     *            The Tabu tenure parameter.
+     * @param iterations
+     *            The number of iterations which the TS will be executed.
+     * @param objFunction
+     *            The inverse QBFPT to be minimized.
+     */
+    public TS_QBFPT(int tenure, long iterations, QBFPT_Inverse objFunction, boolean bstImp,boolean pm,boolean rstrt) {
+        super(objFunction, tenure, iterations);
         this.bestImproving = bstImp;
         this.powerMoves = pm;
         this.restart = rstrt;
-        for(int i = 0;i<this.ObjFunction.getDomainSize();i++) {
-        	age[i] = 0;
-        	cantRemove[i] = false;
+        this.qbfpt = (QBFPT_Inverse) this.ObjFunction;
+        this.cache = new QBFDeltaCache(qbfpt.A, -1.0);
+        this.exchangeSearch = new ExchangeSearch(cache);
+        this.ins = new int[qbfpt.getDomainSize()];
+        this.outs = new int[qbfpt.getDomainSize()];
+        this.freed = new int[qbfpt.getDomainSize()];
+        this.zobrist = new ZobristHash(qbfpt.getDomainSize(), 0);
+        this.cantRemove = new boolean[this.ObjFunction.getDomainSize()];
+        this.memory = new LongTermMemory(this.ObjFunction.getDomainSize(), this.maxAge);
+        this.conflicts = new ConflictState(qbfpt.conflicts);
+        this.lowerBound = -new RoofDuality(qbfpt.A).getUpperBound();
+        setBranchAndBound(qbfpt.getDomainSize() <= EXACT_SIZE);
+    }
+
+    /**
+     * Enables or disables the branch and bound that runs alongside the search,
+     * taking half of its time, to prove the optimality of the best solution.
+     * It is enabled by default on instances of up to {@link #EXACT_SIZE}
+     * variables, and turned off by checkpoints. Without it, the lower bound
+     * is the roof dual bound of the QBF without the prohibited triples.
+     *
+     * @param enabled
+     *            true to run the branch and bound.
+     */
+    public void setBranchAndBound(boolean enabled) {
+        if (enabled) {
+            branchAndBound = new BranchAndBound(qbfpt.A, qbfpt.conflicts);
+            branchAndBound.setShare(0.5);
+        } else {
+            branchAndBound = null;
+        }
+    }
+
+    /**
+     * Chooses between the exact pruned search of the exchange neighborhood
+     * (the default) and the full scan in best-improving mode. Both select the
+     * same move. The first-improving mode always uses the scan.
+     *
+     * @param pruned
+     *            true to use the pruned search.
+     */
+    public void setPrunedExchange(boolean pruned) {
+        this.prunedExchange = pruned;
+    }
+
+    /**
+     * Enables (the default) or disables the exchanges in which the element
+     * entering the solution is blocked by a prohibited triple that contains
+     * the element leaving it. Those candidates are not in the CL, so without
+     * them the search only reaches such swaps through a removal followed by
+     * an insertion.
+     *
+     * @param unblock
+     *            true to evaluate the unblocking exchanges.
+     */
+    public void setUnblockSwaps(boolean unblock) {
+        this.unblockSwaps = unblock;
+    }
+
+    /**
+     * Sets the age, in iterations, after which an element that did not
+     * change is considered old by the long-term memory that drives the
+     * restarts and the power moves. The default is 50.
+     *
+     * @param maxAge
+     *            The age of an old element.
+     */
+    public void setMaxAge(int maxAge) {
+        this.maxAge = maxAge;
+        this.memory = new LongTermMemory(this.ObjFunction.getDomainSize(), maxAge);
+    }
+
+    /**
+     * Sets the fraction of old elements in the long-term memory that starts
+     * the first restart intensification. Every intensification raises it by
+     * 0.1, and once it exceeds 0.4 the search relaxes. The default is 0.2.
+     *
+     * @param restartStep
+     *            The fraction of old elements.
+     */
+    public void setRestartStep(double restartStep) {
+        this.restartStep = restartStep;
+    }
+
+    /**
+     * Sets the fraction of old elements in the long-term memory that starts
+     * the power moves, and to which it returns when the search relaxes. The
+     * default is 0.2.
+     *
+     * @param powerMoveMin
+     *            The fraction of old elements.
+     */
+    public void setPowerMoveMin(double powerMoveMin) {
+        this.powerMoveMin = powerMoveMin;
+        this.powerMoveStart = powerMoveMin;
+    }
+
+    /**
+     * Makes the tabu tenure reactive: it grows when the search revisits a
+     * solution, detected through the Zobrist hash of the incumbent solution,
+     * and shrinks after a long stretch without repetitions.
+     *
+     * @param minTenure
+     *            The smallest tenure.
+     * @param maxTenure
+     *            The largest tenure.
+     * @param stretch
+     *            The number of iterations without repetitions after which the
+     *            tenure shrinks.
+     */
+    public void setReactiveTenure(int minTenure, int maxTenure, int stretch) {
+        this.reactive = new ReactiveTenure(tenure, minTenure, maxTenure, stretch);
+    }
+
+    /**
+     * Enables the elite pool and the path relinking phase. The local optima
+     * visited by the search are offered to a pool of elite solutions and,
+     * whenever the best solution does not improve for a number of iterations,
+     * the search restarts from the best solution found on a path between two
+     * elite solutions.
+     *
+     * @param poolSize
+     *            The maximum number of elite solutions.
+     * @param minDistance
+     *            The minimum Hamming distance between a new elite solution and
+     *            a better one already in the pool.
+     * @param interval
+     *            The number of iterations without improvement that triggers a
+     *            path relinking.
+     */
+    public void setPathRelinking(int poolSize, int minDistance, int interval) {
+        this.elitePool = new ElitePool(qbfpt.getDomainSize(), poolSize, minDistance);
+        this.relinking = new PathRelinking(cache, i -> qbfpt.isInsertionFeasible(i, cache.getVariables()));
+        this.relinkInterval = interval;
+    }
+
+    /**
+     * Enables the exact intensification: whenever an intensification phase
+     * (restart or power move) starts, the assignments of the variables whose
+     * flips are the cheapest are enumerated by a {@link GrayCodeSearch}, and
+     * the best one replaces the incumbent solution if it is better. Disabled
+     * by default.
+     *
+     * @param size
+     *            The number of variables enumerated, at most
+     *            {@link GrayCodeSearch#MAX_VARIABLES}, or 0 to disable it.
+     */
+    public void setExactIntensification(int size) {
+        if (size > GrayCodeSearch.MAX_VARIABLES)
+            throw new IllegalArgumentException("cannot enumerate " + size + " variables");
+        if (size > 0) {
+            grayCode = new GrayCodeSearch(cache, qbfpt.conflicts);
+            exactVars = new int[Math.min(size, qbfpt.getDomainSize())];
+        } else {
+            grayCode = null;
+            exactVars = null;
         }
     }
 
@@ -61,12 +292,11 @@ public class TS_QBFPT extends AbstractTS<Integer> {
      * @see metaheuristics.tabusearch.AbstractTS#makeCL()
      */
     @Override
-    public ArrayList<Integer> makeCL() {
+    public IntSet makeCL() {
 
-        ArrayList<Integer> _CL = new ArrayList<Integer>();
+        IntSet _CL = new IntSet(ObjFunction.getDomainSize());
         for (int i = 0; i < ObjFunction.getDomainSize(); i++) {
-            Integer cand = new Integer(i);
-            _CL.add(cand);
+            _CL.add(i);
         }
 
         return _CL;
@@ -77,9 +307,9 @@ public class TS_QBFPT extends AbstractTS<Integer> {
      * @see metaheuristics.tabusearch.AbstractTS#makeRCL()
      */
     @Override
-    public ArrayList<Integer> makeRCL() {
+    public IntSet makeRCL() {
 
-        ArrayList<Integer> _RCL = new ArrayList<Integer>();
+        IntSet _RCL = new IntSet(ObjFunction.getDomainSize());
 
         return _RCL;
 
@@ -89,11 +319,11 @@ public class TS_QBFPT extends AbstractTS<Integer> {
      * @see metaheuristics.tabusearch.AbstractTS#makeTL()
      */
     @Override
-    public ArrayDeque<Integer> makeTL() {
+    public IntTabuList makeTL() {
 
-        ArrayDeque<Integer> _TS = new ArrayDeque<Integer>(2*tenure);
+        IntTabuList _TS = new IntTabuList(ObjFunction.getDomainSize(), 2*tenure);
         for (int i=0; i<2*tenure; i++) {
-            _TS.add(fake);
+            _TS.add(IntTabuList.FAKE);
         }
 
         return _TS;
@@ -106,9 +336,166 @@ public class TS_QBFPT extends AbstractTS<Integer> {
     @Override
     public void updateCL() {
 
-        // do nothing
-		this.CL = this.ObjFunction.GetCL(this.incumbentSol);
+        if (!conflictsSynced)
+            conflicts.reset(incumbentSol);
+        CL.clear();
+        for (int i = 0; i < ObjFunction.getDomainSize(); i++)
+            if (!incumbentSol.contains(i) && conflicts.canInsert(i))
+                CL.add(i);
+
+    }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The solution is built outside of the main loop, so the conflict state
+     * is rebuilt at every step.
+     */
+    @Override
+    public IntSolution constructiveHeuristic(IntSolution partialSol) {
+        conflictsSynced = false;
+        return super.constructiveHeuristic(partialSol);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * While the solution completes a prohibited triple, the element of the
+     * most completed triples is removed, the cheapest removal breaking ties.
+     */
+    @Override
+    protected int repair(IntSolution sol) {
+        conflicts.reset(sol);
+        int removed = 0;
+        while (true) {
+            int worst = -1, most = 0;
+            double worstCost = Double.POSITIVE_INFINITY;
+            for (int k = 0; k < sol.size(); k++) {
+                int i = sol.get(k);
+                int n = conflicts.violations(i);
+                if (n == 0 || n < most)
+                    continue;
+                double cost = ObjFunction.evaluateRemovalCost(i, sol);
+                if (n > most || cost < worstCost) {
+                    worst = i;
+                    most = n;
+                    worstCost = cost;
+                }
+            }
+            if (worst < 0)
+                return removed;
+            sol.remove(worst);
+            conflicts.remove(worst);
+            removed++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The long-term memory and the one-flip cost variations are synchronized
+     * with the initial solution before the main loop starts.
+     */
+    @Override
+    protected IntSolution search() {
+        memory.clear();
+        for (int k = 0; k < incumbentSol.size(); k++)
+            memory.insert(incumbentSol.get(k));
+        cache.reset(incumbentSol);
+        zobrist.reset(incumbentSol);
+        conflicts.reset(incumbentSol);
+        conflictsSynced = true;
+        return super.search();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The long-term memory follows the elements that entered or left the
+     * solution and its ages restart, as after a path relinking; the one-flip
+     * cost variations and the conflict state are rebuilt.
+     */
+    @Override
+    protected void incumbentChanged() {
+        for (int i = 0; i < this.ObjFunction.getDomainSize(); i++) {
+            if (incumbentSol.contains(i) && !memory.contains(i))
+                memory.insert(i);
+            else if (!incumbentSol.contains(i) && memory.contains(i))
+                memory.remove(i);
+            cantRemove[i] = false;
+        }
+        memory.resetAges();
+        cache.reset(incumbentSol);
+        zobrist.reset(incumbentSol);
+        conflicts.reset(incumbentSol);
+        conflictsSynced = true;
+    }
+
+    /**
+     * Changes a coefficient of the QBF, possibly while the search runs in
+     * another thread. The change is applied before the next move of the main
+     * loop: the matrix of the objective function, which must not be shared
+     * with another solver, is patched in place, and the cost variations and
+     * the costs of the incumbent and best solutions follow it in O(1). The
+     * lower bound of the former QBF is dropped, together with the branch and
+     * bound; the elite solutions keep the costs they were found with.
+     *
+     * @param i
+     *            The row of the coefficient.
+     * @param j
+     *            The column of the coefficient.
+     * @param value
+     *            The new value of A[i][j].
+     */
+    public void updateCoefficient(int i, int j, double value) {
+        updates.add(i, j, value);
+    }
+
+    /* (non-Javadoc)
+     * @see metaheuristics.tabusearch.AbstractIntTS#applyUpdates()
+     */
+    @Override
+    protected void applyUpdates() {
+        if (!updates.isPending())
+            return;
+        int n = updates.apply(qbfpt.A, cache);
+        for (int k = 0; k < n; k++) {
+            int i = updates.row(k), j = updates.column(k);
+            exchangeSearch.updateCoupling(i, j);
+            if (bestSol.contains(i) && bestSol.contains(j))
+                bestSol.cost += updates.variation(k);
+        }
+        incumbentSol.cost = cache.getCost();
+        lowerBound = Double.NEGATIVE_INFINITY;
+        branchAndBound = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A slice of the branch and bound is explored with the value of the best
+     * solution; a better solution found by it becomes the incumbent.
+     */
+    @Override
+    protected void improveBound() {
+        if (branchAndBound == null || branchAndBound.isFinished())
+            return;
+        if (branchAndBound.improve(-bestSol.cost)) {
+            IntSolution leaf = new IntSolution(branchAndBound.getBestLeaf());
+            leaf.cost = -leaf.cost;
+            moveTo(leaf);
+        }
+        lowerBound = Math.max(lowerBound, -branchAndBound.getUpperBound());
+    }
+
+    /**
+     * Gives the long-term memory (ages, frequencies and residences) of the
+     * search.
+     *
+     * @return the long-term memory.
+     */
+    public LongTermMemory getMemory() {
+        return memory;
     }
 
     /**
@@ -119,8 +506,8 @@ public class TS_QBFPT extends AbstractTS<Integer> {
      * to zero has also zero cost.
      */
     @Override
-    public Solution<Integer> createEmptySol() {
-        Solution<Integer> sol = new Solution<Integer>();
+    public IntSolution createEmptySol() {
+        IntSolution sol = new IntSolution(ObjFunction.getDomainSize());
         sol.cost = 0.0;
         return sol;
     }
@@ -132,23 +519,22 @@ public class TS_QBFPT extends AbstractTS<Integer> {
      * composed by the neighborhood moves Insertion, Removal and 2-Exchange.
      */
     @Override
-    public Solution<Integer> neighborhoodMove() {
-
-        int maxAgeQt = 0;
-        for(int i = 0;i<this.ObjFunction.getDomainSize();i++) {
-        	//System.out.println(i+" "+age[i]);
-        	if(this.incumbentSol.contains(i)) age[i] += 1;
-        	else age[i] = 0;
-        	if(age[i] > this.maxAge) maxAgeQt++;
-        }
-        Double maxAgePct =  (double) ( (double)maxAgeQt/ (double)(this.ObjFunction.getDomainSize()));
+    public IntSolution neighborhoodMove() {
+
+        if (this.elitePool != null && pathRelinkingStep())
+            return null;
+
+        memory.nextIteration();
+        double maxAgePct = memory.oldFraction();
         //System.out.println(maxAgePct);
+        boolean intensified = false;
         if(this.restart){
         	if(maxAgePct > this.restartStep) {
         		System.out.println("Intensifica");
+        		intensified = exactIntensification();
         		this.restartStep += 0.1;
         		for(int i = 0;i<this.ObjFunction.getDomainSize();i++) {                	
-                	if(age[i] > this.maxAge) this.cantRemove[i] = true;
+                	if(memory.isOld(i)) this.cantRemove[i] = true;
                 }
             	TL.clear();
         	}        
@@ -157,59 +543,68 @@ public class TS_QBFPT extends AbstractTS<Integer> {
         		System.out.println("Para de intensificar e relaxa");
         		for(int i = 0;i<this.ObjFunction.getDomainSize();i++) {                	
                 	this.cantRemove[i] = false;
-                	this.age[i] = 0;
                 }
+        		memory.resetAges();
         		this.restartStep = 0.0;
         	}
         }
-        Double minDeltaCost;
-        Integer bestCandIn = null, bestCandOut = null;
+        // Let the main loop record an improvement before any uphill move
+        if (intensified)
+            return null;
+        double minDeltaCost;
+        int bestCandIn = -1, bestCandOut = -1;
 
         minDeltaCost = Double.POSITIVE_INFINITY;
         updateCL();
         
-        Collections.shuffle(CL); 
-        Collections.shuffle(incumbentSol);
+        clOrder.reset(CL.size(), rng);
+        solOrder.reset(incumbentSol.size(), rng);
         
-        Integer doubleIn1=null,doubleIn2=null,doubleRem1=null,doubleRem2=null;
+        int doubleIn1=-1,doubleIn2=-1,doubleRem1=-1,doubleRem2=-1;
         if(this.powerMoves && maxAgePct > this.powerMoveMin) {
         	System.out.println("Power move");        	
     		this.powerMoveMin += 0.1;
     		System.out.println("Intensifica");
+    		intensified = exactIntensification();
         	TL.clear();        
     		for(int i = 0;i<this.ObjFunction.getDomainSize();i++) {                	
-            	if(age[i] > this.maxAge) this.cantRemove[i] = true;
+            	if(memory.isOld(i)) this.cantRemove[i] = true;
             }	        	
-        	for (Integer candIn : CL) {
+    		if (intensified)
+    			return null;
+        	// Evaluate double insertions, both flips at once from the cached deltas
+        	for (int pCandIn = 0; pCandIn < CL.size(); pCandIn++) {
+                int candIn = CL.get(clOrder.get(pCandIn));
                 if (TL.contains(candIn)) continue;
-                Solution<Integer> nsl = new Solution<Integer>(incumbentSol);
-                nsl.add(candIn);
-                ArrayList<Integer> nCl = this.ObjFunction.GetCL(nsl);
-                for(Integer candIn2 : nCl) {
-                    Double deltaCost = ObjFunction.evaluateInsertionCost(candIn2, nsl);
-                    if((TL.contains(candIn2) || TL.contains(candIn)) && !(nsl.cost+deltaCost < bestSol.cost)) continue;
-                    if(nsl.cost+deltaCost < bestSol.cost ) {
+                for (int pCandIn2 = 0; pCandIn2 < CL.size(); pCandIn2++) {
+                    int candIn2 = CL.get(clOrder.get(pCandIn2));
+                    if (candIn2 == candIn || !conflicts.canInsertPair(candIn, candIn2)) continue;
+                    double deltaCost = cache.pairDelta(candIn, candIn2);
+                    if((TL.contains(candIn2) || TL.contains(candIn)) && !(incumbentSol.cost+deltaCost < bestSol.cost)) continue;
+                    if(incumbentSol.cost+deltaCost < bestSol.cost ) {
                     	minDeltaCost = deltaCost;
                         doubleIn1 = candIn;
                         doubleIn2 = candIn2;
-                        doubleRem1 = null;
-                        doubleRem2 = null;
+                        doubleRem1 = -1;
+                        doubleRem2 = -1;
                         if(this.bestImproving == false) break;
                     }
                 }
             }
         	
-        	for (Integer candOut : incumbentSol) {
+        	// Evaluate double removals
+        	for (int pCandOut = 0; pCandOut < incumbentSol.size(); pCandOut++) {
+                int candOut = incumbentSol.get(solOrder.get(pCandOut));
 	        	if(cantRemove[candOut]) continue;	            
-                Solution<Integer> nsl = new Solution<Integer>(incumbentSol);
-                nsl.remove(candOut);
-                for(Integer candOut2 : nsl) {
-                    Double deltaCost = ObjFunction.evaluateRemovalCost(candOut2, nsl);
-                    if((TL.contains(candOut2) || TL.contains(candOut)) && !(nsl.cost+deltaCost < bestSol.cost)) continue;
+                for (int pCandOut2 = 0; pCandOut2 < incumbentSol.size(); pCandOut2++) {
+                    int candOut2 = incumbentSol.get(solOrder.get(pCandOut2));
+                    if (candOut2 == candOut || cantRemove[candOut2]) continue;
+                    double deltaCost = cache.pairDelta(candOut, candOut2);
+                    if((TL.contains(candOut2) || TL.contains(candOut)) && !(incumbentSol.cost+deltaCost < bestSol.cost)) continue;
     	            if (deltaCost < minDeltaCost) {
 	                    minDeltaCost = deltaCost;
-	                    doubleIn1 = null;
-                        doubleIn2 = null;
+	                    doubleIn1 = -1;
+                        doubleIn2 = -1;
                         doubleRem1 = candOut;
                         doubleRem2 = candOut2;
 	                    if(this.bestImproving == false) break;
@@ -221,31 +616,33 @@ public class TS_QBFPT extends AbstractTS<Integer> {
         		System.out.println("Para de intensificar e relaxa");
         		for(int i = 0;i<this.ObjFunction.getDomainSize();i++) {                	
                 	this.cantRemove[i] = false;
-                	this.age[i] = 0;
                 }
-        		this.powerMoveMin = 0.2;
+        		memory.resetAges();
+        		this.powerMoveMin = this.powerMoveStart;
         	}
         }else {
 	        // Evaluate insertions
-	        for (Integer candIn : CL) {
-	            Double deltaCost = ObjFunction.evaluateInsertionCost(candIn, incumbentSol);
+	        for (int pCandIn = 0; pCandIn < CL.size(); pCandIn++) {
+	            int candIn = CL.get(clOrder.get(pCandIn));
+	            double deltaCost = cache.delta(candIn);
 	            if (!TL.contains(candIn) || incumbentSol.cost+deltaCost < bestSol.cost) {
 	                if (deltaCost < minDeltaCost) {
 	                    minDeltaCost = deltaCost;
 	                    bestCandIn = candIn;
-	                    bestCandOut = null;
+	                    bestCandOut = -1;
 	                    if(this.bestImproving == false) break;
 	                }
 	            }
 	        }
 	        // Evaluate removals
-	        for (Integer candOut : incumbentSol) {
+	        for (int pCandOut = 0; pCandOut < incumbentSol.size(); pCandOut++) {
+	            int candOut = incumbentSol.get(solOrder.get(pCandOut));
 	        	if(cantRemove[candOut]) continue;
-	            Double deltaCost = ObjFunction.evaluateRemovalCost(candOut, incumbentSol);
+	            double deltaCost = cache.delta(candOut);
 	            if (!TL.contains(candOut) || incumbentSol.cost+deltaCost < bestSol.cost) {
 	                if (deltaCost < minDeltaCost) {
 	                    minDeltaCost = deltaCost;
-	                    bestCandIn = null;
+	                    bestCandIn = -1;
 	                    bestCandOut = candOut;
 	                    if(this.bestImproving == false) break;
 	                }
@@ -253,16 +650,60 @@ public class TS_QBFPT extends AbstractTS<Integer> {
 	        }
         }
         // Evaluate exchanges
-        for (Integer candIn : CL) {
-            boolean stop = false;
-            for (Integer candOut : incumbentSol) {
-            	if(cantRemove[candOut]) continue;
-                Double deltaCost = ObjFunction.evaluateExchangeCost(candIn, candOut, incumbentSol);
+        boolean stop = false;
+        if (this.bestImproving && this.prunedExchange) {
+            int nIns = 0, nOuts = 0;
+            for (int pCandIn = 0; pCandIn < CL.size(); pCandIn++)
+                ins[nIns++] = CL.get(clOrder.get(pCandIn));
+            for (int pCandOut = 0; pCandOut < incumbentSol.size(); pCandOut++) {
+                int candOut = incumbentSol.get(solOrder.get(pCandOut));
+                if (!cantRemove[candOut])
+                    outs[nOuts++] = candOut;
+            }
+            if (exchangeSearch.search(ins, nIns, outs, nOuts, isTabu,
+                    bestSol.cost - incumbentSol.cost, minDeltaCost)) {
+                minDeltaCost = exchangeSearch.getBestDelta();
+                bestCandIn = exchangeSearch.getBestIn();
+                bestCandOut = exchangeSearch.getBestOut();
+                doubleIn1 = doubleIn2 = doubleRem1 = doubleRem2 = -1;
+            }
+        } else {
+            for (int pCandIn = 0; pCandIn < CL.size(); pCandIn++) {
+                int candIn = CL.get(clOrder.get(pCandIn));
+                for (int pCandOut = 0; pCandOut < incumbentSol.size(); pCandOut++) {
+                    int candOut = incumbentSol.get(solOrder.get(pCandOut));
+                	if(cantRemove[candOut]) continue;
+                    double deltaCost = cache.pairDelta(candIn, candOut);
+                    if ((!TL.contains(candIn) && !TL.contains(candOut)) || incumbentSol.cost+deltaCost < bestSol.cost) {
+                        if (deltaCost < minDeltaCost) {
+                            minDeltaCost = deltaCost;
+                            bestCandIn = candIn;
+                            bestCandOut = candOut;
+                            doubleIn1 = doubleIn2 = doubleRem1 = doubleRem2 = -1;
+                            if (this.bestImproving == false) {
+                                stop = true;
+                                break;
+                            }
+                        }
+                    }
+                }
+                if(stop == true) break;
+            }
+        }
+        // Evaluate exchanges with the candidates blocked only by the element leaving
+        for (int pCandOut = 0; this.unblockSwaps && !stop && pCandOut < incumbentSol.size(); pCandOut++) {
+            int candOut = incumbentSol.get(solOrder.get(pCandOut));
+            if(cantRemove[candOut]) continue;
+            int nFreed = conflicts.freedBy(candOut, freed);
+            for (int k = 0; k < nFreed; k++) {
+                int candIn = freed[k];
+                double deltaCost = cache.pairDelta(candIn, candOut);
                 if ((!TL.contains(candIn) && !TL.contains(candOut)) || incumbentSol.cost+deltaCost < bestSol.cost) {
                     if (deltaCost < minDeltaCost) {
                         minDeltaCost = deltaCost;
                         bestCandIn = candIn;
                         bestCandOut = candOut;
+                        doubleIn1 = doubleIn2 = doubleRem1 = doubleRem2 = -1;
                         if (this.bestImproving == false) {
                             stop = true;
                             break;
@@ -270,66 +711,252 @@ public class TS_QBFPT extends AbstractTS<Integer> {
                     }
                 }
             }
-            if(stop == true) break;
         }
+        // Keep the local optima in the elite pool
+        if (this.elitePool != null && !(minDeltaCost < 0))
+            this.elitePool.offer(incumbentSol, incumbentSol.cost);
         // Implement the best non-tabu move
         TL.poll();
-        if (bestCandOut != null) {
+        if (bestCandOut >= 0) {
             incumbentSol.remove(bestCandOut);
+            memory.remove(bestCandOut);
+            flip(bestCandOut);
             CL.add(bestCandOut);
             TL.add(bestCandOut);
         } else {
-            TL.add(fake);
+            TL.add(IntTabuList.FAKE);
         }
         TL.poll();
-        if (bestCandIn != null) {
+        if (bestCandIn >= 0) {
             incumbentSol.add(bestCandIn);
+            memory.insert(bestCandIn);
+            flip(bestCandIn);
             CL.remove(bestCandIn);
             TL.add(bestCandIn);
         } else {
-            TL.add(fake);
+            TL.add(IntTabuList.FAKE);
         }
         if(this.powerMoves) {
         	TL.poll();
         	TL.poll();
-        	if(doubleIn1 != null) {
+        	if(doubleIn1 >= 0) {
         		incumbentSol.add(doubleIn1);
         		incumbentSol.add(doubleIn2);
+        		memory.insert(doubleIn1);
+        		memory.insert(doubleIn2);
+        		flip(doubleIn1);
+        		flip(doubleIn2);
         		CL.remove(doubleIn1);
         		CL.remove(doubleIn2);
         		TL.add(doubleIn1);
         		TL.add(doubleIn2);
         	}else {
-        		TL.add(fake);
-        		TL.add(fake);
+        		TL.add(IntTabuList.FAKE);
+        		TL.add(IntTabuList.FAKE);
         	}
         	TL.poll();
         	TL.poll();
-        	if(doubleRem1 != null) {
+        	if(doubleRem1 >= 0) {
         		incumbentSol.remove(doubleRem1);
         		incumbentSol.remove(doubleRem2);
+        		memory.remove(doubleRem1);
+        		memory.remove(doubleRem2);
+        		flip(doubleRem1);
+        		flip(doubleRem2);
         		CL.add(doubleRem1);
         		CL.add(doubleRem2);
         		TL.add(doubleRem1);
         		TL.add(doubleRem2);
         	}else {
-        		TL.add(fake);
-        		TL.add(fake);
+        		TL.add(IntTabuList.FAKE);
+        		TL.add(IntTabuList.FAKE);
         	}
         }
-        ObjFunction.evaluate(incumbentSol);
+        incumbentSol.cost = cache.getCost();
+        if (reactive != null)
+            adaptTenure(reactive.update(zobrist.get()));
         return null;
     }
 
     /**
-     * A main method used for testing the TS metaheuristic.
+     * Enumerates the assignments of the variables whose flips are the
+     * cheapest, keeping the others, and moves to the best one if it improves
+     * the incumbent solution. The CL is left to be rebuilt by the caller.
+     *
+     * @return true if the incumbent solution changed.
+     */
+    private boolean exactIntensification() {
+        if (grayCode == null)
+            return false;
+        int k = exactVars.length, m = 0;
+        for (int i = 0; i < this.ObjFunction.getDomainSize(); i++) {
+            double d = cache.delta(i);
+            if (m < k)
+                m++;
+            else if (d >= cache.delta(exactVars[k - 1]))
+                continue;
+            int p = m - 1;
+            for (; p > 0 && cache.delta(exactVars[p - 1]) > d; p--)
+                exactVars[p] = exactVars[p - 1];
+            exactVars[p] = i;
+        }
+        if (!grayCode.search(exactVars, k))
+            return false;
+        int flips = grayCode.getFlips(exactVars);
+        for (int f = 0; f < flips; f++) {
+            int i = exactVars[f];
+            if (incumbentSol.contains(i)) {
+                incumbentSol.remove(i);
+                memory.remove(i);
+            } else {
+                incumbentSol.add(i);
+                memory.insert(i);
+            }
+            flip(i);
+        }
+        incumbentSol.cost = cache.getCost();
+        if (verbose)
+            System.out.println("Exact intensification: " + incumbentSol.cost);
+        return true;
+    }
+
+    /**
+     * Flips an element in the cost variation cache, in the conflict state and
+     * in the hash of the incumbent solution.
+     */
+    private void flip(int i) {
+        cache.flip(i);
+        zobrist.flip(i);
+        conflicts.flip(i);
+    }
+
+    /**
+     * Changes the tabu tenure, resizing the Tabu List: the oldest entries are
+     * dropped when it shrinks and fake entries are prepended when it grows.
+     */
+    private void adaptTenure(int newTenure) {
+        tenure = newTenure;
+        while (TL.size() > 2 * tenure)
+            TL.poll();
+        while (TL.size() < 2 * tenure)
+            TL.addFirst(IntTabuList.FAKE);
+    }
+
+    /**
+     * Path relinking phase. When the best solution has not improved for
+     * {@link #relinkInterval} iterations, two elite solutions are relinked and
+     * the incumbent solution is replaced by the best solution of the path.
+     *
+     * @return true if the incumbent solution was replaced.
+     */
+    private boolean pathRelinkingStep() {
+
+        if (bestSol.cost < lastBestCost) {
+            lastBestCost = bestSol.cost;
+            stagnation = 0;
+        } else {
+            stagnation++;
+        }
+        if (stagnation < relinkInterval || elitePool.size() < 2)
+            return false;
+        stagnation = 0;
+
+        int from = rng.nextInt(elitePool.size());
+        int to = rng.nextInt(elitePool.size() - 1);
+        if (to >= from)
+            to++;
+        if (relinking.relink(elitePool.get(from), elitePool.get(to)) == Double.POSITIVE_INFINITY) {
+            cache.reset(incumbentSol);
+            return false;
+        }
+
+        for (int k = 0; k < incumbentSol.size(); k++)
+            if (!cache.contains(incumbentSol.get(k)))
+                memory.remove(incumbentSol.get(k));
+        incumbentSol.clear();
+        for (int i = 0; i < this.ObjFunction.getDomainSize(); i++) {
+            if (cache.contains(i)) {
+                incumbentSol.add(i);
+                if (!memory.contains(i))
+                    memory.insert(i);
+            }
+            cantRemove[i] = false;
+        }
+        memory.resetAges();
+        zobrist.reset(incumbentSol);
+        conflicts.reset(incumbentSol);
+        incumbentSol.cost = cache.getCost();
+        TL = makeTL();
+        if (verbose)
+            System.out.println("Path relinking: " + incumbentSol.cost);
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Besides the incumbent and best solutions and the Tabu List, the
+     * checkpoint holds the long-term memory, the intensification state, the
+     * elite pool and the reactive tenure.
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        cache.writeState(out);
+        for (int i = 0; i < cantRemove.length; i++)
+            out.writeBoolean(cantRemove[i]);
+        out.writeDouble(restartStep);
+        out.writeDouble(powerMoveMin);
+        out.writeInt(stagnation);
+        out.writeDouble(lastBestCost);
+        memory.writeState(out);
+        out.writeBoolean(elitePool != null);
+        if (elitePool != null)
+            elitePool.writeState(out);
+        out.writeBoolean(reactive != null);
+        if (reactive != null)
+            reactive.writeState(out);
+    }
+
+    /* (non-Javadoc)
+     * @see metaheuristics.tabusearch.AbstractIntTS#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        cache.readState(in);
+        for (int i = 0; i < cantRemove.length; i++)
+            cantRemove[i] = in.readBoolean();
+        restartStep = in.readDouble();
+        powerMoveMin = in.readDouble();
+        stagnation = in.readInt();
+        lastBestCost = in.readDouble();
+        memory.readState(in);
+        if (in.readBoolean() != (elitePool != null))
+            throw new IOException("checkpoint and solver disagree on the path relinking");
+        if (elitePool != null)
+            elitePool.readState(in);
+        if (in.readBoolean() != (reactive != null))
+            throw new IOException("checkpoint and solver disagree on the reactive tenure");
+        if (reactive != null)
+            reactive.readState(in);
+        zobrist.reset(incumbentSol);
+        conflicts.reset(incumbentSol);
+        conflictsSynced = true;
+    }
+
+    /**
+     * A main method used for testing the TS metaheuristic. The instance file
+     * can be given as the first argument.
      *
      */
     public static void main(String[] args) throws IOException {
 
         long startTime = System.currentTimeMillis();
-        TS_QBFPT tabusearch = new TS_QBFPT(10, 30000, "C:\\Users\\josec\\tabu-search\\TS_Framework\\instances\\qbf400",true,true,false);
-        Solution<Integer> bestSol = tabusearch.solve();
+        String instance = args.length > 0 ? args[0] : "instances/qbf400";
+        TS_QBFPT tabusearch = new TS_QBFPT(10, 30000, instance,true,true,false);
+        IntSolution bestSol = tabusearch.solve();
         String s = "";
         for(int i = 0;i < tabusearch.ObjFunction.getDomainSize();i++) {
         	if(tabusearch.bestSol.contains(i)) s+= "1 ";
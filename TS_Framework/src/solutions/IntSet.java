@@ -0,0 +1,174 @@
+package solutions;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A set of elements from the domain 0..n-1 stored without boxing. Besides the
+ * array of elements, it keeps the position of each element in that array, so
+ * membership tests, insertions and removals cost O(1). Removals move the last
+ * element into the removed position, so the order of the elements is not
+ * preserved.
+ */
+public class IntSet {
+
+	/**
+	 * the elements of the set; only the first {@link #size} are valid.
+	 */
+	protected final int[] elements;
+
+	/**
+	 * the position of each domain element in {@link #elements}, or -1.
+	 */
+	protected final int[] position;
+
+	/**
+	 * the number of elements of the set.
+	 */
+	protected int size;
+
+	/**
+	 * Creates an empty set.
+	 * 
+	 * @param domainSize
+	 *            the number of elements of the domain.
+	 */
+	public IntSet(int domainSize) {
+		elements = new int[domainSize];
+		position = new int[domainSize];
+		Arrays.fill(position, -1);
+		size = 0;
+	}
+
+	/**
+	 * Creates a copy of a set.
+	 * 
+	 * @param set
+	 *            the set to copy.
+	 */
+	public IntSet(IntSet set) {
+		elements = set.elements.clone();
+		position = set.position.clone();
+		size = set.size;
+	}
+
+	/**
+	 * Makes this set equal to another one over the same domain, without
+	 * allocating.
+	 * 
+	 * @param set
+	 *            the set to copy.
+	 */
+	public void copyFrom(IntSet set) {
+		clear();
+		for (int k = 0; k < set.size; k++)
+			add(set.elements[k]);
+	}
+
+	public boolean add(int e) {
+		if (position[e] >= 0)
+			return false;
+		position[e] = size;
+		elements[size++] = e;
+		return true;
+	}
+
+	public boolean remove(int e) {
+		int p = position[e];
+		if (p < 0)
+			return false;
+		int last = elements[--size];
+		elements[p] = last;
+		position[last] = p;
+		position[e] = -1;
+		return true;
+	}
+
+	public boolean contains(int e) {
+		return position[e] >= 0;
+	}
+
+	/**
+	 * @param k
+	 *            a position, from 0 to size()-1.
+	 * @return the element at the given position.
+	 */
+	public int get(int k) {
+		return elements[k];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		for (int k = 0; k < size; k++)
+			position[elements[k]] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Gives the backing array of the set, whose first size() entries are the
+	 * elements. The array is owned by the set and must not be modified.
+	 * 
+	 * @return the backing array.
+	 */
+	public int[] elements() {
+		return elements;
+	}
+
+	/**
+	 * @return the number of elements of the domain.
+	 */
+	public int getDomainSize() {
+		return position.length;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int k = 0; k < size; k++) {
+			if (k > 0)
+				sb.append(", ");
+			sb.append(elements[k]);
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * Writes the elements of the set, in their current order.
+	 *
+	 * @param out
+	 *            the output.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for (int k = 0; k < size; k++)
+			out.writeInt(elements[k]);
+	}
+
+	/**
+	 * Replaces the elements of the set by the ones written by
+	 * {@link #writeState(DataOutput)}, restoring their order.
+	 *
+	 * @param in
+	 *            the input.
+	 * @throws IOException
+	 *             Necessary for I/O operations.
+	 */
+	public void readState(DataInput in) throws IOException {
+		clear();
+		int n = in.readInt();
+		for (int k = 0; k < n; k++)
+			add(in.readInt());
+	}
+
+}
@@ -0,0 +1,53 @@
+package solutions;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Primitive counterpart of {@link Solution} for problems whose elements are
+ * the integers 0..n-1.
+ */
+public class IntSolution extends IntSet {
+
+	public double cost = Double.POSITIVE_INFINITY;
+
+	public IntSolution(int domainSize) {
+		super(domainSize);
+	}
+
+	public IntSolution(IntSolution sol) {
+		super(sol);
+		cost = sol.cost;
+	}
+
+	/**
+	 * Makes this solution equal to another one over the same domain, cost
+	 * included, without allocating.
+	 * 
+	 * @param sol
+	 *            the solution to copy.
+	 */
+	public void copyFrom(IntSolution sol) {
+		super.copyFrom(sol);
+		cost = sol.cost;
+	}
+
+	@Override
+	public String toString() {
+		return "Solution: cost=[" + cost + "], size=[" + this.size() + "], elements=" + super.toString();
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeDouble(cost);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		cost = in.readDouble();
+	}
+
+}